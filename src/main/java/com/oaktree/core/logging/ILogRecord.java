@@ -3,14 +3,38 @@ package com.oaktree.core.logging;
 import java.util.logging.LogRecord;
 
 import com.oaktree.core.logging.handlers.ILoggingHandler;
+import com.oaktree.core.logging.mdc.MDCMap;
 
 public interface ILogRecord {
+	/**
+	 * Argument slot types.
+	 */
+	byte OBJECT_ARGUMENT = 0;
+	byte LONG_ARGUMENT = 1;
+	byte DOUBLE_ARGUMENT = 2;
+	
 	void setMillis(long millis);
 	long getMillis();
+	/**
+	 * Set the time in nanos since the epoch, to the precision of the clock that made it. Millis
+	 * are set separately.
+	 * @param nanos
+	 */
+	void setNanos(long nanos);
+	long getNanos();
 	String getThreadName();
 	void setThreadName(String name);
 	int getThreadId();
 	void setThreadId(int id);
+	/**
+	 * Set the thread the record was logged on; also sets the thread id and name.
+	 * @param identity
+	 */
+	void setThreadIdentity(ThreadIdentity identity);
+	/**
+	 * @return identity of the thread the record was logged on, if known.
+	 */
+	ThreadIdentity getThreadIdentity();
 	void setLogger(ILogger logger);
 	ILogger getLogger();
 	
@@ -19,6 +43,96 @@ public interface ILogRecord {
 	LogRecord toLogRecord();
 	void setMessage(String msg);
 	String getMessage();
+	/**
+	 * Clear the message and hand out the record's own buffer to write it into; no String is made
+	 * unless a handler asks for getMessage. The buffer must not be kept once the record is published.
+	 * @return the message buffer, empty.
+	 */
+	StringBuilder claimMessageBuffer();
+	/**
+	 * Add an argument to be substituted into the {} placeholders of the message.
+	 * @param arg
+	 */
+	void addArgument(Object arg);
+	/**
+	 * Set the arguments to be substituted into the {} placeholders of the message.
+	 * @param args
+	 */
+	void setArguments(Object[] args);
+	/**
+	 * Add a primitive argument; held unboxed until rendered.
+	 * @param arg
+	 */
+	void addArgument(long arg);
+	/**
+	 * Add a primitive argument; held unboxed until rendered.
+	 * @param arg
+	 */
+	void addArgument(double arg);
+	int getArgumentCount();
+	/**
+	 * Get the type of an argument slot e.g. LONG_ARGUMENT.
+	 * @param index
+	 * @return argument type
+	 */
+	byte getArgumentType(int index);
+	/**
+	 * Get an argument. Primitive arguments are boxed; use the typed getters to avoid this.
+	 * @param index
+	 * @return argument
+	 */
+	Object getArgument(int index);
+	long getLongArgument(int index);
+	double getDoubleArgument(int index);
+	/**
+	 * Render an argument into the buffer.
+	 * @param index
+	 * @param buffer
+	 */
+	void appendArgument(int index, StringBuilder buffer);
+	/**
+	 * Render the message, with any arguments substituted, into the buffer.
+	 * @param buffer
+	 */
+	void appendMessage(StringBuilder buffer);
+	/**
+	 * A hash of the message template and arguments, and of the classes and stack trace of any
+	 * throwable, made without rendering the message; records with the same message have the same hash.
+	 * @return hash
+	 */
+	long getMessageHash();
+	/**
+	 * Take a copy of the MDC entries, replacing any the record had.
+	 * @param mdc null for none.
+	 */
+	void setMdc(MDCMap mdc);
+	int getMdcCount();
+	String getMdcKey(int index);
+	String getMdcValue(int index);
+	/**
+	 * @param key
+	 * @return value of the MDC entry with the key, or null.
+	 */
+	String getMdcValue(String key);
+	/**
+	 * Render the MDC entries into the buffer as key=value separated by commas.
+	 * @param buffer
+	 */
+	void appendMdc(StringBuilder buffer);
+	/**
+	 * Attach a throwable; its stack trace is rendered by the handlers, after the message, only as
+	 * they format the record.
+	 * @param t null for none.
+	 */
+	void setThrowable(Throwable t);
+	Throwable getThrowable();
+	/**
+	 * Set the markers of the record as a mask of marker bits.
+	 * @see Markers
+	 * @param mask
+	 */
+	void setMarkers(long mask);
+	long getMarkers();
 	void setCount(int size);
 	void onProcessed(ILoggingHandler handler);
 }
@@ -0,0 +1,14 @@
+package com.oaktree.core.logging;
+
+/**
+ * Renders an argument of a log message, e.g. an order book, straight into the message buffer;
+ * called only if the logger and at least one of its handlers would take the record, on the logging
+ * thread.
+ *
+ * @author Oak Tree Designs Ltd
+ *
+ * @param <T> argument type.
+ */
+public interface IMessageRenderer<T> {
+	void render(T arg, StringBuilder buffer);
+}
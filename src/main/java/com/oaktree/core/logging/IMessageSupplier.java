@@ -0,0 +1,11 @@
+package com.oaktree.core.logging;
+
+/**
+ * Makes a log message on demand; called only if the logger and at least one of its handlers would
+ * take the record, on the logging thread, so it may read state that changes afterwards.
+ *
+ * @author Oak Tree Designs Ltd
+ */
+public interface IMessageSupplier {
+	String get();
+}
@@ -19,7 +19,9 @@ public class Log {
 
 	/**
 	 * display a throwable in a nice fashion; includes the stack trace
-	 * and will output to our chosen logger.
+	 * and will output to our chosen logger. The throwable goes on a single
+	 * record and is rendered by the handlers, its class and message heading
+	 * the stack trace, so the message itself says no more.
 	 * @param logger
 	 * @param e
 	 */
@@ -28,44 +30,7 @@ public class Log {
 		if (e == null) {
 			return;
 		}
-        StackTraceElement[] stack = e.getStackTrace();
-        if (stack.length == 0) {
-    		logger.error(
-    			e.getClass().getName() +
-    			" " +
-    			e.getMessage()
-    		);
-    		return;
-        }
-        /*
-         * Log the name of the exception and the message under the name of the
-         * class at the bottom of the stack.
-         */
-		stack[stack.length - 1].getClassName();
-		logger.error(e.getClass().getName() + 
-				" " +
-				e.getMessage());
-		/*
-		 * Log the stack trace.
-		 */
-		String trace	= "    in ";
-		String line		= " at line ";
-		String text		= null;
-		int lineNumber	= 0;
-		for (int i = 0; i < stack.length; i++) {
-			text =
-				trace +
-				stack[i].getClassName() +
-				" " +
-				stack[i].getMethodName() +
-				"()";
-			lineNumber = stack[i].getLineNumber();
-			if (lineNumber > 0) {
-				logger.error(text + line + lineNumber);
-			} else {
-				logger.error(text);
-			}
-		}
+		logger.error("Caught exception", e);
 		} catch (Exception ex) {
 			//Logger.getAnonymousLogger().warning("Cannot handle exception properly");
 			ex.printStackTrace();
@@ -0,0 +1,186 @@
+package com.oaktree.core.logging;
+
+/**
+ * Builds the message of a record field by field, straight into the record's own buffer, e.g.
+ * logger.atInfo().add("px", 101.25).add("qty", 500L).add(symbol).log() gives "px=101.25 qty=500 VOD.L".
+ * Numbers are appended without boxing and chars are copied, so no String is made for the message.
+ *
+ * When the level is off the logger hands out a builder that does nothing. A builder is reused by
+ * its thread so it must not be kept after log(); a record claimed but never logged, e.g. because
+ * working out a field threw, goes back to the pool when the thread next starts a builder.
+ *
+ * @author Oak Tree Designs Ltd
+ */
+public class LogBuilder {
+
+	/**
+	 * Handed out when the level is off; never started, so everything is ignored.
+	 */
+	final static LogBuilder NOOP = new LogBuilder();
+
+	private LowLatencyLogger logger;
+	private ILogRecord record;
+	private StringBuilder buffer;
+	/**
+	 * Set while a field's own code (toString, charAt) runs, which may itself log.
+	 */
+	private boolean adding;
+
+	LogBuilder() {}
+
+	/**
+	 * Start building into the record.
+	 * @param logger to publish to.
+	 * @param record claimed record.
+	 * @return this
+	 */
+	LogBuilder start(LowLatencyLogger logger, ILogRecord record) {
+		this.logger = logger;
+		this.record = record;
+		this.buffer = record.claimMessageBuffer();
+		return this;
+	}
+
+	/**
+	 * @return true if building a record, so not free to be handed out again.
+	 */
+	boolean isBusy() {
+		return record != null;
+	}
+
+	/**
+	 * @return true if busy because a field being added is logging, rather than the record abandoned.
+	 */
+	boolean isAdding() {
+		return adding;
+	}
+
+	/**
+	 * Give back the record of a build that was never logged; the builder is then free for reuse.
+	 */
+	void abandon() {
+		ILogRecord r = this.record;
+		LowLatencyLogger l = this.logger;
+		this.record = null;
+		this.buffer = null;
+		this.logger = null;
+		this.adding = false;
+		if (r != null) {
+			l.onFree(r);
+		}
+	}
+
+	public LogBuilder add(String key, long value) {
+		if (buffer != null) {
+			separate().append(key).append('=').append(value);
+		}
+		return this;
+	}
+
+	public LogBuilder add(String key, double value) {
+		if (buffer != null) {
+			separate().append(key).append('=').append(value);
+		}
+		return this;
+	}
+
+	public LogBuilder add(String key, boolean value) {
+		if (buffer != null) {
+			separate().append(key).append('=').append(value);
+		}
+		return this;
+	}
+
+	public LogBuilder add(String key, CharSequence value) {
+		if (buffer != null) {
+			adding = true;
+			try {
+				separate().append(key).append('=').append(value);
+			} finally {
+				adding = false;
+			}
+		}
+		return this;
+	}
+
+	public LogBuilder add(String key, char[] value) {
+		if (buffer != null) {
+			separate().append(key).append('=').append(value);
+		}
+		return this;
+	}
+
+	public LogBuilder add(String key, Object value) {
+		if (buffer != null) {
+			adding = true;
+			try {
+				MessageRenderer.appendObject(value, separate().append(key).append('='));
+			} finally {
+				adding = false;
+			}
+		}
+		return this;
+	}
+
+	public LogBuilder add(long value) {
+		if (buffer != null) {
+			separate().append(value);
+		}
+		return this;
+	}
+
+	public LogBuilder add(double value) {
+		if (buffer != null) {
+			separate().append(value);
+		}
+		return this;
+	}
+
+	public LogBuilder add(CharSequence value) {
+		if (buffer != null) {
+			adding = true;
+			try {
+				separate().append(value);
+			} finally {
+				adding = false;
+			}
+		}
+		return this;
+	}
+
+	public LogBuilder add(char[] value) {
+		if (buffer != null) {
+			separate().append(value);
+		}
+		return this;
+	}
+
+	public LogBuilder add(char[] value, int offset, int length) {
+		if (buffer != null) {
+			separate().append(value, offset, length);
+		}
+		return this;
+	}
+
+	/**
+	 * Publish the record to the logger's handlers; the builder is then free for reuse.
+	 */
+	public void log() {
+		ILogRecord r = this.record;
+		if (r == null) {
+			return;
+		}
+		LowLatencyLogger l = this.logger;
+		this.record = null;
+		this.buffer = null;
+		this.logger = null;
+		l.publish(r);
+	}
+
+	private StringBuilder separate() {
+		if (buffer.length() > 0) {
+			buffer.append(' ');
+		}
+		return buffer;
+	}
+}
@@ -1,6 +1,11 @@
 package com.oaktree.core.logging;
 
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+import com.oaktree.core.logging.formatters.StackTraceCache;
 import com.oaktree.core.logging.handlers.ILoggingHandler;
+import com.oaktree.core.logging.mdc.MDCMap;
+import com.oaktree.core.logging.pool.TrackingPool;
 
 /**
  * A lock free object for passing around our logging infrastructure, replacing LogRecord which did lots
@@ -11,29 +16,328 @@ import com.oaktree.core.logging.handlers.ILoggingHandler;
 public class LogRecord implements ILogRecord {
 
 	private static final long serialVersionUID = 1L;
+	private static final int DEFAULT_ARGUMENTS = 4;
+	private static final int DEFAULT_MDC = 4;
+	private static final int DEFAULT_TEXT = 128;
+	/**
+	 * Message buffers larger than this are not kept with the record.
+	 */
+	private static final int MAX_KEPT_TEXT = 64 * 1024;
 	private Level level;
 	private long millis;
+	private long nanos;
 	private int threadId;
 	
 	private ILogger logger;
 	private String threadName;
+	private ThreadIdentity threadIdentity;
 	private String msg;
-	private int count = 0; //number of people to process before we are "done".
+	/**
+	 * Message written straight into the record, used instead of msg while textMessage is set. Kept
+	 * with the record as it is pooled.
+	 */
+	private StringBuilder text;
+	private boolean textMessage;
+	/**
+	 * Arguments for the {} placeholders in msg. Preallocated and reused as records are pooled;
+	 * substitution is deferred until a handler asks for the message.
+	 */
+	private Object[] arguments = new Object[DEFAULT_ARGUMENTS];
+	/**
+	 * Primitive arguments, held unboxed (doubles as raw bits) so numbers can be logged without allocation.
+	 */
+	private long[] primitiveArguments = new long[DEFAULT_ARGUMENTS];
+	private byte[] argumentTypes = new byte[DEFAULT_ARGUMENTS];
+	private int argumentCount = 0;
+	/**
+	 * Copy of the MDC when logged; preallocated and reused like the arguments.
+	 */
+	private String[] mdcKeys = new String[DEFAULT_MDC];
+	private String[] mdcValues = new String[DEFAULT_MDC];
+	private int mdcCount = 0;
+	private Throwable throwable;
+	/**
+	 * Marker bits, see Markers.
+	 */
+	private long markers;
+	/**
+	 * The message with arguments substituted, made on first request.
+	 */
+	private String rendered;
+	/**
+	 * Number of handlers still to process us before we are "done" and can go back to the pool.
+	 * Handlers may run on different threads so this is only changed atomically.
+	 */
+	private volatile int count = 0;
+	private static final AtomicIntegerFieldUpdater<LogRecord> COUNT = AtomicIntegerFieldUpdater.newUpdater(LogRecord.class, "count");
 	public LogRecord() {}
 	
 	public LogRecord(final String msg, final Level lvl, final long time, final long threadId,final String threadName,final ILogger logger) {
 		this.msg = msg;
 		this.millis = time;
+		this.nanos = time * 1000000L;
 		this.level = lvl;
 		this.threadId = (int)threadId;
 		this.threadName = threadName;
 		this.logger = logger;
 	}
 	public String getMessage() {
-		return this.msg;
+		if (argumentCount == 0 && !textMessage) {
+			return this.msg;
+		}
+		String r = this.rendered;
+		if (r == null && textMessage) {
+			r = text.toString();
+			this.rendered = r;
+		} else if (r == null) {
+			StringBuilder buffer = new StringBuilder(msg == null ? 16 : msg.length() + 32);
+			MessageRenderer.render(msg, this, buffer);
+			r = buffer.toString();
+			this.rendered = r;
+		}
+		return r;
 	}
+	
+	/**
+	 * Set the message (or message template). Any arguments from a previous use of this record
+	 * are discarded.
+	 */
 	public void setMessage(String msg) {
 		this.msg = msg;
+		this.textMessage = false;
+		this.rendered = null;
+		for (int i = 0; i < argumentCount; i++) {
+			arguments[i] = null;
+		}
+		this.argumentCount = 0;
+	}
+	
+	@Override
+	public StringBuilder claimMessageBuffer() {
+		setMessage(null);
+		if (text == null || text.capacity() > MAX_KEPT_TEXT) {
+			text = new StringBuilder(DEFAULT_TEXT);
+		} else {
+			text.setLength(0);
+		}
+		textMessage = true;
+		return text;
+	}
+
+	@Override
+	public void addArgument(Object arg) {
+		ensureArgumentCapacity(argumentCount + 1);
+		argumentTypes[argumentCount] = OBJECT_ARGUMENT;
+		arguments[argumentCount++] = arg;
+		this.rendered = null;
+	}
+	
+	@Override
+	public void addArgument(long arg) {
+		ensureArgumentCapacity(argumentCount + 1);
+		argumentTypes[argumentCount] = LONG_ARGUMENT;
+		primitiveArguments[argumentCount++] = arg;
+		this.rendered = null;
+	}
+	
+	@Override
+	public void addArgument(double arg) {
+		ensureArgumentCapacity(argumentCount + 1);
+		argumentTypes[argumentCount] = DOUBLE_ARGUMENT;
+		primitiveArguments[argumentCount++] = Double.doubleToRawLongBits(arg);
+		this.rendered = null;
+	}
+	
+	@Override
+	public void setArguments(Object[] args) {
+		if (args == null) {
+			return;
+		}
+		ensureArgumentCapacity(argumentCount + args.length);
+		for (Object arg:args) {
+			argumentTypes[argumentCount] = OBJECT_ARGUMENT;
+			arguments[argumentCount++] = arg;
+		}
+		this.rendered = null;
+	}
+	
+	/**
+	 * Grow the argument slots; as records are pooled this only allocates the first time a
+	 * record sees a call with this many arguments.
+	 * @param size
+	 */
+	private void ensureArgumentCapacity(int size) {
+		if (size > arguments.length) {
+			int capacity = Math.max(size, arguments.length * 2);
+			Object[] grown = new Object[capacity];
+			System.arraycopy(arguments, 0, grown, 0, argumentCount);
+			arguments = grown;
+			long[] grownPrimitives = new long[capacity];
+			System.arraycopy(primitiveArguments, 0, grownPrimitives, 0, argumentCount);
+			primitiveArguments = grownPrimitives;
+			byte[] grownTypes = new byte[capacity];
+			System.arraycopy(argumentTypes, 0, grownTypes, 0, argumentCount);
+			argumentTypes = grownTypes;
+		}
+	}
+	
+	@Override
+	public int getArgumentCount() {
+		return argumentCount;
+	}
+	
+	@Override
+	public byte getArgumentType(int index) {
+		return argumentTypes[index];
+	}
+	
+	@Override
+	public Object getArgument(int index) {
+		switch (argumentTypes[index]) {
+		case LONG_ARGUMENT:
+			return primitiveArguments[index];
+		case DOUBLE_ARGUMENT:
+			return getDoubleArgument(index);
+		default:
+			return arguments[index];
+		}
+	}
+	
+	@Override
+	public long getLongArgument(int index) {
+		return primitiveArguments[index];
+	}
+	
+	@Override
+	public double getDoubleArgument(int index) {
+		return Double.longBitsToDouble(primitiveArguments[index]);
+	}
+	
+	@Override
+	public void appendArgument(int index, StringBuilder buffer) {
+		switch (argumentTypes[index]) {
+		case LONG_ARGUMENT:
+			buffer.append(primitiveArguments[index]);
+			break;
+		case DOUBLE_ARGUMENT:
+			buffer.append(getDoubleArgument(index));
+			break;
+		default:
+			MessageRenderer.appendObject(arguments[index], buffer);
+		}
+	}
+	
+	@Override
+	public long getMessageHash() {
+		long h = 0;
+		if (textMessage) {
+			for (int i = 0; i < text.length(); i++) {
+				h = 31 * h + text.charAt(i);
+			}
+		} else if (msg != null) {
+			h = msg.hashCode();
+		}
+		for (int i = 0; i < argumentCount; i++) {
+			long a;
+			if (argumentTypes[i] == OBJECT_ARGUMENT) {
+				a = arguments[i] != null ? arguments[i].hashCode() : 0;
+			} else {
+				a = primitiveArguments[i];
+			}
+			h = h * 0x9E3779B97F4A7C15L + a;
+		}
+		if (throwable != null) {
+			h = h * 0x9E3779B97F4A7C15L + StackTraceCache.hash(throwable);
+		}
+		//spread the bits (murmur3 finaliser) so nearby values do not give nearby hashes.
+		h ^= h >>> 33;
+		h *= 0xFF51AFD7ED558CCDL;
+		h ^= h >>> 33;
+		h *= 0xC4CEB9FE1A85EC53L;
+		h ^= h >>> 33;
+		return h;
+	}
+
+	@Override
+	public void setMdc(MDCMap mdc) {
+		int old = mdcCount;
+		int n = 0;
+		if (mdc != null && mdc.size() > 0) {
+			ensureMdcCapacity(mdc.size());
+			for (int i = 0; i < mdc.getSlots(); i++) {
+				String key = mdc.getKey(i);
+				if (key != null) {
+					mdcKeys[n] = key;
+					mdcValues[n++] = mdc.getValue(i);
+				}
+			}
+		}
+		//drop the rest so pooled records do not hold on to old values.
+		for (int i = n; i < old; i++) {
+			mdcKeys[i] = null;
+			mdcValues[i] = null;
+		}
+		mdcCount = n;
+	}
+
+	private void ensureMdcCapacity(int size) {
+		if (size > mdcKeys.length) {
+			int capacity = Math.max(size, mdcKeys.length * 2);
+			String[] grownKeys = new String[capacity];
+			System.arraycopy(mdcKeys, 0, grownKeys, 0, mdcCount);
+			mdcKeys = grownKeys;
+			String[] grownValues = new String[capacity];
+			System.arraycopy(mdcValues, 0, grownValues, 0, mdcCount);
+			mdcValues = grownValues;
+		}
+	}
+
+	@Override
+	public int getMdcCount() {
+		return mdcCount;
+	}
+
+	@Override
+	public String getMdcKey(int index) {
+		return mdcKeys[index];
+	}
+
+	@Override
+	public String getMdcValue(int index) {
+		return mdcValues[index];
+	}
+
+	@Override
+	public String getMdcValue(String key) {
+		for (int i = 0; i < mdcCount; i++) {
+			if (mdcKeys[i].equals(key)) {
+				return mdcValues[i];
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public void appendMdc(StringBuilder buffer) {
+		for (int i = 0; i < mdcCount; i++) {
+			if (i > 0) {
+				buffer.append(',');
+			}
+			buffer.append(mdcKeys[i]).append('=').append(mdcValues[i]);
+		}
+	}
+
+	@Override
+	public void appendMessage(StringBuilder buffer) {
+		if (textMessage) {
+			buffer.append(text);
+		} else if (argumentCount == 0) {
+			buffer.append(msg);
+		} else if (rendered != null) {
+			buffer.append(rendered);
+		} else {
+			MessageRenderer.render(msg, this, buffer);
+		}
 	}
 	
 	public Level getLevel() {
@@ -53,6 +357,11 @@ public class LogRecord implements ILogRecord {
 		return this.millis;
 	}
 
+	@Override
+	public long getNanos() {
+		return this.nanos;
+	}
+
 	@Override
 	public int getThreadId() {
 		return this.threadId;
@@ -73,6 +382,11 @@ public class LogRecord implements ILogRecord {
 		this.millis = millis;
 	}
 
+	@Override
+	public void setNanos(long nanos) {
+		this.nanos = nanos;
+	}
+
 	@Override
 	public void setThreadId(int id) {
 		this.threadId = id;
@@ -81,6 +395,21 @@ public class LogRecord implements ILogRecord {
 	@Override
 	public void setThreadName(String name) {
 		this.threadName = name;
+		this.threadIdentity = null;
+	}
+
+	@Override
+	public void setThreadIdentity(ThreadIdentity identity) {
+		this.threadIdentity = identity;
+		if (identity != null) {
+			this.threadId = identity.getId();
+			this.threadName = identity.getName();
+		}
+	}
+
+	@Override
+	public ThreadIdentity getThreadIdentity() {
+		return threadIdentity;
 	}
 
 	@Override
@@ -89,6 +418,26 @@ public class LogRecord implements ILogRecord {
 		return null;
 	}
 
+	@Override
+	public void setThrowable(Throwable t) {
+		this.throwable = t;
+	}
+
+	@Override
+	public Throwable getThrowable() {
+		return throwable;
+	}
+
+	@Override
+	public void setMarkers(long mask) {
+		this.markers = mask;
+	}
+
+	@Override
+	public long getMarkers() {
+		return markers;
+	}
+
 	@Override
 	public void setCount(int count) {
 		this.count = count;
@@ -96,10 +445,55 @@ public class LogRecord implements ILogRecord {
 	
 	@Override
 	public void onProcessed(ILoggingHandler handler) {
-		this.count = count  -1;
-		if (count == 0) {
+		int remaining = COUNT.decrementAndGet(this);
+		if (remaining == 0) {
 			logger.onFree(this);
+		} else if (remaining < 0 && logger != null && TrackingPool.DEBUG) {
+			new Throwable("Record processed by " + handler + " after it was freed: " + this).printStackTrace();
+		}
+	}
+	
+	/**
+	 * Take a copy of another record's contents, including any unrendered arguments, so
+	 * formatting can still be deferred. The source record is not changed.
+	 * @param from
+	 */
+	public void copyFrom(ILogRecord from) {
+		this.level = from.getLevel();
+		this.millis = from.getMillis();
+		this.nanos = from.getNanos();
+		this.threadId = from.getThreadId();
+		this.threadName = from.getThreadName();
+		this.threadIdentity = from.getThreadIdentity();
+		this.logger = from.getLogger();
+		this.markers = from.getMarkers();
+		this.throwable = from.getThrowable();
+		if (!(from instanceof LogRecord)) {
+			setMessage(from.getMessage());
+			return;
+		}
+		LogRecord lr = (LogRecord)from;
+		int old = mdcCount;
+		ensureMdcCapacity(lr.mdcCount);
+		System.arraycopy(lr.mdcKeys, 0, mdcKeys, 0, lr.mdcCount);
+		System.arraycopy(lr.mdcValues, 0, mdcValues, 0, lr.mdcCount);
+		for (int i = lr.mdcCount; i < old; i++) {
+			mdcKeys[i] = null;
+			mdcValues[i] = null;
+		}
+		this.mdcCount = lr.mdcCount;
+		if (lr.textMessage) {
+			claimMessageBuffer().append(lr.text);
+		} else {
+			setMessage(lr.msg);
 		}
+		int n = lr.argumentCount;
+		ensureArgumentCapacity(n);
+		System.arraycopy(lr.arguments, 0, arguments, 0, n);
+		System.arraycopy(lr.primitiveArguments, 0, primitiveArguments, 0, n);
+		System.arraycopy(lr.argumentTypes, 0, argumentTypes, 0, n);
+		this.argumentCount = n;
+		this.rendered = lr.rendered;
 	}
 	
 	@Override
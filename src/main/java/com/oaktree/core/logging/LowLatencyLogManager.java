@@ -1,9 +1,25 @@
 package com.oaktree.core.logging;
 
+import com.oaktree.core.logging.clock.CoarseClock;
+import com.oaktree.core.logging.clock.IClock;
+import com.oaktree.core.logging.clock.ManualClock;
+import com.oaktree.core.logging.clock.NanoClock;
+import com.oaktree.core.logging.clock.SystemClock;
 import com.oaktree.core.logging.formatters.ConsoleFormatter;
 import com.oaktree.core.logging.formatters.IFormatter;
+import com.oaktree.core.logging.formatters.PatternFormatter;
+import com.oaktree.core.logging.handlers.AbstractBackgroundHandler;
 import com.oaktree.core.logging.handlers.ConsoleHandler;
 import com.oaktree.core.logging.handlers.ILoggingHandler;
+import com.oaktree.core.logging.handlers.MarkerFilterHandler;
+import com.oaktree.core.logging.handlers.RepeatSuppressingHandler;
+import com.oaktree.core.logging.handlers.ThrottledHandler;
+import com.oaktree.core.logging.pool.IObjectFactory;
+import com.oaktree.core.logging.pool.IPool;
+import com.oaktree.core.logging.pool.MagazinePool;
+import com.oaktree.core.logging.pool.PoolStatistics;
+import com.oaktree.core.logging.pool.StackPool;
+import com.oaktree.core.logging.pool.TrackingPool;
 
 import org.slf4j.ILoggerFactory;
 
@@ -55,6 +71,22 @@ public class LowLatencyLogManager implements ILoggerFactory, LowLatencyLogManage
 	
 	private static boolean recordThread = true;
 	private static Properties properties;
+	
+	/**
+	 * Default number of log records shared by all loggers.
+	 */
+	private final static int DEFAULT_RECORD_POOL_SIZE = 256;
+	/**
+	 * The one pool of records all loggers take from, so memory follows the number of records being
+	 * logged at once rather than the number of loggers. Replaced when we are reinitialised; records
+	 * freed to a newer pool than they came from are simply dropped.
+	 */
+	private static volatile IPool<ILogRecord> recordPool = makeRecordPool(DEFAULT_RECORD_POOL_SIZE, 0);
+	private static volatile PoolStatistics recordPoolStatistics;
+	/**
+	 * Where loggers get the time for their records.
+	 */
+	private static volatile IClock clock = new SystemClock();
 
 	
 	static {
@@ -130,6 +162,8 @@ public class LowLatencyLogManager implements ILoggerFactory, LowLatencyLogManage
 		LowLatencyLogger parent = getParentLogger(name);
 		if (parent != null) {
 			logger.setLevel(parent.getLevel());
+			logger.setThrottle(parent.getThrottle());
+			logger.setMarkers(parent.getMarkers());
 		}
 		return logger;
 	}
@@ -209,6 +243,15 @@ public class LowLatencyLogManager implements ILoggerFactory, LowLatencyLogManage
 	}
 
 	private final static String recordThreadString = "recordThread";
+	private final static String recordPoolSizeString = "recordPoolSize";
+	private final static String recordPoolMagazineString = "recordPoolMagazine";
+	private final static String clockString = "clock";
+	private final static String rateLimitSuffix = ".rateLimit";
+	private final static String sampleSuffix = ".sample";
+	private final static String repeatWindowSuffix = ".repeatWindow";
+	private final static String markersString = "markers";
+	private final static String markersSuffix = ".markers";
+	private final static String excludeMarkersSuffix = ".excludeMarkers";
 	
 	private static ILoggingHandler makeHandler(Properties p,Set<Object> keys,Set<Object> toRemove,String han) {
 		ILoggingHandler handler = null;
@@ -232,6 +275,12 @@ public class LowLatencyLogManager implements ILoggerFactory, LowLatencyLogManage
 					System.err.println("Could not create formatter "+formatter + " for handler " + han);
 				}
 			}
+			String pattern = p.getProperty(han + ".pattern");
+			toRemove.add(han + ".pattern");
+			if (pattern != null) {
+				System.out.println("Creating pattern formatter " + pattern + " for handler " + han);
+				handler.setFormatter(new PatternFormatter(pattern));
+			}
 			if (level != null) {
 				Level l = Level.parse(level.trim());
 	            if (l == null) {
@@ -246,7 +295,9 @@ public class LowLatencyLogManager implements ILoggerFactory, LowLatencyLogManage
 			System.out.println("SLF4J Created handler " + handler.getName() + " "+ handler.getClass().getName());
 			Method[] methods = handler.getClass().getMethods();
 			for (Method method:methods) {
-				if (method.getName().startsWith("set")) {
+				//only String setters can take a property value; typed setters of the same name, e.g.
+				//setFlushPolicy(IBackgroundFlushPolicy) beside setFlushPolicy(String), are for code.
+				if (method.getName().startsWith("set") && method.getParameterTypes().length == 1 && method.getParameterTypes()[0] == String.class) {
 					if (!method.getName().equals("setFormatter") && !method.getName().equals("setLevel") && !method.getName().equals("setHandler")) {
 						String field = method.getName().substring(3);
 						//lowercase the first char
@@ -272,6 +323,32 @@ public class LowLatencyLogManager implements ILoggerFactory, LowLatencyLogManage
 			 * start the handler
 			 */
 			handler.start();
+			String repeatWindow = p.getProperty(han + repeatWindowSuffix);
+			toRemove.add(han + repeatWindowSuffix);
+			if (repeatWindow != null) {
+				System.out.println("Handler " + han + " suppresses repeats within " + repeatWindow.trim() + "ms");
+				//background handlers took it as a property and suppress around their delegates, off the logging threads.
+				if (!(handler instanceof AbstractBackgroundHandler)) {
+					handler = new RepeatSuppressingHandler(handler, Long.valueOf(repeatWindow.trim()));
+				}
+			}
+			String rateLimit = p.getProperty(han + rateLimitSuffix);
+			String sample = p.getProperty(han + sampleSuffix);
+			toRemove.add(han + rateLimitSuffix);
+			toRemove.add(han + sampleSuffix);
+			Throttle throttle = Throttle.parse(rateLimit, sample);
+			if (throttle != null) {
+				System.out.println("Handler " + han + " is throttled " + throttle);
+				handler = new ThrottledHandler(handler, throttle);
+			}
+			String markers = p.getProperty(han + markersSuffix);
+			String excludeMarkers = p.getProperty(han + excludeMarkersSuffix);
+			toRemove.add(han + markersSuffix);
+			toRemove.add(han + excludeMarkersSuffix);
+			if (markers != null || excludeMarkers != null) {
+				System.out.println("Handler " + han + " takes markers " + markers + " excluding " + excludeMarkers);
+				handler = new MarkerFilterHandler(handler, Markers.parse(markers), Markers.parse(excludeMarkers));
+			}
 		} catch (Exception e) {
 			e.printStackTrace();
 		}
@@ -323,6 +400,10 @@ public class LowLatencyLogManager implements ILoggerFactory, LowLatencyLogManage
 			Set<Object> keys = properties.keySet();
 			Set<Object> toRemove = new HashSet<Object>();
 
+			//MARKERS, given their bits in the order listed.
+			Markers.parse(properties.getProperty(markersString));
+			toRemove.add(markersString);
+
 			//HANDLER AND FORMATTER SETUP.
 			String hndlrs = properties.getProperty("handlers");
 			if (hndlrs != null && hndlrs.length() > 0) {
@@ -342,6 +423,16 @@ public class LowLatencyLogManager implements ILoggerFactory, LowLatencyLogManage
 				recordThread = Boolean.valueOf(recordT);
 				keys.remove(recordThreadString);
 			}
+			String poolSize = properties.getProperty(recordPoolSizeString);
+			String magazine = properties.getProperty(recordPoolMagazineString);
+			keys.remove(recordPoolSizeString);
+			keys.remove(recordPoolMagazineString);
+			recordPool = makeRecordPool(poolSize != null ? Integer.valueOf(poolSize.trim()) : DEFAULT_RECORD_POOL_SIZE,
+					magazine != null ? Integer.valueOf(magazine.trim()) : Integer.getInteger(MagazinePool.MAGAZINE_PROPERTY, 0));
+			System.out.println("SLF4J Record pool: " + recordPoolStatistics);
+			setClock(makeClock(properties.getProperty(clockString)));
+			keys.remove(clockString);
+			System.out.println("SLF4J Clock: " + clock);
 			
 			//ROOT LOGGER SETUP.
 			rootLogger = new LowLatencyLogger("root", recordThread,defaultHandler);
@@ -399,6 +490,22 @@ public class LowLatencyLogManager implements ILoggerFactory, LowLatencyLogManage
 						resolveHandlers(logger);
 					} 
 					
+				} else if (skey.endsWith(rateLimitSuffix) || skey.endsWith(sampleSuffix)) {
+					String k = skey.substring(0, skey.lastIndexOf('.'));
+					LowLatencyLogger logger = "".equals(k) ? rootLogger : loggers.get(k);
+					if (logger == null) {
+						logger = createLogger(k);
+						loggers.putIfAbsent(k, logger);
+					}
+					logger.setThrottle(Throttle.parse(properties.getProperty(k + rateLimitSuffix), properties.getProperty(k + sampleSuffix)));
+				} else if (skey.endsWith(markersSuffix)) {
+					String k = skey.substring(0, skey.lastIndexOf('.'));
+					LowLatencyLogger logger = "".equals(k) ? rootLogger : loggers.get(k);
+					if (logger == null) {
+						logger = createLogger(k);
+						loggers.putIfAbsent(k, logger);
+					}
+					logger.setMarkers(Markers.parse(properties.getProperty(skey)));
 				} else {
                     System.err.println("Key " + key + " does not contain .level at end - intentional?");
                 }
@@ -430,14 +537,107 @@ public class LowLatencyLogManager implements ILoggerFactory, LowLatencyLogManage
 		}
 	}
 
+	/**
+	 * Make the shared record pool.
+	 * @param size number of records
+	 * @param magazine per thread magazine size; 0 for none.
+	 * @return pool
+	 */
+	private static IPool<ILogRecord> makeRecordPool(int size, int magazine) {
+		StackPool<ILogRecord> records = new StackPool<ILogRecord>(size, new IObjectFactory<ILogRecord>(){
+
+			@Override
+			public ILogRecord make() {
+				return new LogRecord();
+			}});
+		recordPoolStatistics = records.enableStatistics("Records");
+		recordPoolStatistics.register();
+		IPool<ILogRecord> pool = records;
+		if (magazine > 0) {
+			pool = new MagazinePool<ILogRecord>(pool, magazine);
+		}
+		//-Doaktree.logging.pool.debug=true to find records used after free or never freed.
+		return TrackingPool.DEBUG ? new TrackingPool<ILogRecord>(pool) : pool;
+	}
+	
+	/**
+	 * Make a clock from its properties name: SYSTEM (default), COARSE, NANO, MANUAL or a class name.
+	 * @param name
+	 * @return clock
+	 */
+	private static IClock makeClock(String name) {
+		if (name == null || "SYSTEM".equalsIgnoreCase(name.trim())) {
+			return new SystemClock();
+		}
+		name = name.trim();
+		if ("COARSE".equalsIgnoreCase(name)) {
+			return new CoarseClock();
+		} else if ("NANO".equalsIgnoreCase(name)) {
+			return new NanoClock();
+		} else if ("MANUAL".equalsIgnoreCase(name)) {
+			return new ManualClock(System.currentTimeMillis());
+		}
+		try {
+			return (IClock)Class.forName(name).newInstance();
+		} catch (Exception e) {
+			System.err.println("SLF4J Cannot make clock " + name + "; using the system clock. " + e);
+			return new SystemClock();
+		}
+	}
+
+	/**
+	 * @return the clock stamping log records.
+	 */
+	public static IClock getClock() {
+		return clock;
+	}
+
+	/**
+	 * Replace the clock stamping log records, e.g. with a ManualClock in tests. The old clock is
+	 * stopped and the new one started.
+	 * @param c
+	 */
+	public static void setClock(IClock c) {
+		if (c == null) {
+			throw new IllegalArgumentException("Invalid clock. Must be not-null");
+		}
+		IClock old = clock;
+		c.start();
+		clock = c;
+		if (old != c) {
+			old.stop();
+		}
+	}
+
+	/**
+	 * @return the pool of records shared by all loggers.
+	 */
+	public static IPool<ILogRecord> getRecordPool() {
+		return recordPool;
+	}
+	
+	public static PoolStatistics getRecordPoolStatistics() {
+		return recordPoolStatistics;
+	}
+	
 	public static ILoggingHandler getHandler(String name) {
 		return handlers.get(name);
 	}
 	
 	public static void stop() {
+		for (LowLatencyLogger logger:loggers.values()) {
+			logger.reportSuppressed();
+		}
+		if (rootLogger != null) {
+			rootLogger.reportSuppressed();
+		}
 		for (ILoggingHandler handler:handlers.values()) {
 			handler.stop();
 		}
+		if (recordPool instanceof TrackingPool) {
+			//handlers are done so every record should be back in the pool by now.
+			((TrackingPool<ILogRecord>)recordPool).reportLeaks();
+		}
 	}
 
 
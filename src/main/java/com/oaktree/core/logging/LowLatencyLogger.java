@@ -6,10 +6,10 @@ import java.util.Set;
 import org.slf4j.Logger;
 import org.slf4j.Marker;
 
+import com.oaktree.core.logging.clock.IClock;
 import com.oaktree.core.logging.handlers.ILoggingHandler;
-import com.oaktree.core.logging.pool.IObjectFactory;
+import com.oaktree.core.logging.mdc.OaktreeMDCAdapter;
 import com.oaktree.core.logging.pool.IPool;
-import com.oaktree.core.logging.pool.SimplePool;
 
 /**
  * A particularly fast version of a logger. No locking; just gives the log record to 
@@ -31,11 +31,41 @@ public class LowLatencyLogger implements Logger,ILogger {
 	 * a console handler with its associated basic console formatter.
 	 */
 	private Set<ILoggingHandler> handlers = new HashSet<ILoggingHandler>();
+	/**
+	 * The handlers as an array, remade when they change, so publishing needs no iterator.
+	 */
+	private volatile ILoggingHandler[] handlerArray = new ILoggingHandler[0];
+	/**
+	 * Builder per thread for the fluent atXxx() api.
+	 */
+	private final static ThreadLocal<LogBuilder> builders = new ThreadLocal<LogBuilder>() {
+		@Override
+		protected LogBuilder initialValue() {
+			return new LogBuilder();
+		}
+	};
+	/**
+	 * Buffer per thread for rendering arguments with an IMessageRenderer.
+	 */
+	private final static ThreadLocal<StringBuilder> renderBuffers = new ThreadLocal<StringBuilder>() {
+		@Override
+		protected StringBuilder initialValue() {
+			return new StringBuilder(256);
+		}
+	};
 	
 	/**
 	 * The logging level filter.
 	 */
 	private volatile int level;
+	/**
+	 * Optional rate limit/sampling of records, checked before a record is made.
+	 */
+	private volatile Throttle throttle;
+	/**
+	 * Marker bits logged whatever the level, see Markers.
+	 */
+	private volatile long markers;
 	/**
 	 * Sometimes thread is not required; this safes a native call if disabled in properties.
 	 */
@@ -50,6 +80,7 @@ public class LowLatencyLogger implements Logger,ILogger {
 		if (defaultHandler != null) {
 			handlers.add(defaultHandler);
 		}
+		updateHandlerArray();
 	}
 	public LowLatencyLogger(String name, boolean getThreadInformation, ILoggingHandler defaultHandler) {
 		this(name, defaultHandler);
@@ -60,6 +91,11 @@ public class LowLatencyLogger implements Logger,ILogger {
 		for (ILoggingHandler handler:handlers) {
 			this.handlers.add(handler);
 		}
+		updateHandlerArray();
+	}
+
+	private void updateHandlerArray() {
+		this.handlerArray = this.handlers.toArray(new ILoggingHandler[this.handlers.size()]);
 	}
 	public void setLevel(Level level) {
 		
@@ -100,47 +136,453 @@ public class LowLatencyLogger implements Logger,ILogger {
 	 * @param level
 	 */
 	public void log(String message, Level level) {
-		if (this.level > level.intValue()) {
+		if (!isLogging(level)) {
 			return;
 		}
-		String tname = null;
-		long tid = 0;
-		if (getThreadInformation) {
-			Thread thread =  Thread.currentThread();
-			tname = thread.getName();
-			tid = thread.getId();
+		publish(makeLogRecord(message,level));
+	}
+	
+	/**
+	 * Log a message with a throwable. Only the reference is taken; the stack trace is rendered
+	 * by each handler as it formats the record, after the message, so on a background handler
+	 * the logging thread pays for one record, not a record or string per frame.
+	 *
+	 * @param message
+	 * @param level
+	 * @param t
+	 */
+	public void log(String message, Level level, Throwable t) {
+		if (!isLogging(level)) {
+			return;
+		}
+		ILogRecord rec = makeLogRecord(message,level);
+		rec.setThrowable(t);
+		publish(rec);
+	}
+
+	/**
+	 * Log a message held in e.g. a reused StringBuilder. Once the level passes the chars are copied
+	 * into the record's own buffer, so the caller may reuse its builder at once and no String is made.
+	 * The message is taken as it is; {} placeholders are not substituted.
+	 *
+	 * @param message
+	 * @param level
+	 */
+	public void log(CharSequence message, Level level) {
+		if (!isLogging(level)) {
+			return;
+		}
+		ILogRecord rec = makeLogRecord(null, level);
+		if (message != null) {
+			rec.claimMessageBuffer().append(message);
 		}
-		ILogRecord rec = makeLogRecord(message,level,(int)tid,tname);
-		for (ILoggingHandler handler: this.handlers) {
-			handler.publish(rec);
+		publish(rec);
+	}
+
+	/**
+	 * Log a message held in part of a char array, copied as for log(CharSequence, Level).
+	 *
+	 * @param message
+	 * @param offset
+	 * @param length
+	 * @param level
+	 */
+	public void log(char[] message, int offset, int length, Level level) {
+		if (!isLogging(level)) {
+			return;
 		}
+		ILogRecord rec = makeLogRecord(null, level);
+		rec.claimMessageBuffer().append(message, offset, length);
+		publish(rec);
+	}
+
+	public void trace(CharSequence message) {
+		log(message, Level.TRACE);
+	}
+
+	public void debug(CharSequence message) {
+		log(message, Level.DEBUG);
+	}
+
+	public void info(CharSequence message) {
+		log(message, Level.INFO);
+	}
 
+	public void warn(CharSequence message) {
+		log(message, Level.WARN);
+	}
+
+	public void error(CharSequence message) {
+		log(message, Level.ERROR);
+	}
+
+	public void trace(char[] message, int offset, int length) {
+		log(message, offset, length, Level.TRACE);
+	}
+
+	public void debug(char[] message, int offset, int length) {
+		log(message, offset, length, Level.DEBUG);
+	}
+
+	public void info(char[] message, int offset, int length) {
+		log(message, offset, length, Level.INFO);
+	}
+
+	public void warn(char[] message, int offset, int length) {
+		log(message, offset, length, Level.WARN);
+	}
+
+	public void error(char[] message, int offset, int length) {
+		log(message, offset, length, Level.ERROR);
+	}
+
+	/**
+	 * Log a parameterised message. The argument is captured on the record and only substituted
+	 * into the {} placeholder when a handler renders the message; for background handlers that is
+	 * on the processing thread.
+	 * 
+	 * @param template
+	 * @param level
+	 * @param arg
+	 */
+	public void log(String template, Level level, Object arg) {
+		if (!isLogging(level)) {
+			return;
+		}
+		ILogRecord rec = makeLogRecord(template,level);
+		addArgument(rec, template, arg);
+		publish(rec);
+	}
+	
+	/**
+	 * Log a parameterised message with two arguments.
+	 * @see #log(String, Level, Object)
+	 */
+	public void log(String template, Level level, Object arg1, Object arg2) {
+		if (!isLogging(level)) {
+			return;
+		}
+		ILogRecord rec = makeLogRecord(template,level);
+		addArguments(rec, template, arg1, arg2);
+		publish(rec);
+	}
+	
+	/**
+	 * Log a parameterised message with any number of arguments.
+	 * @see #log(String, Level, Object)
+	 */
+	public void log(String template, Level level, Object[] args) {
+		if (!isLogging(level)) {
+			return;
+		}
+		ILogRecord rec = makeLogRecord(template,level);
+		addArguments(rec, template, args);
+		publish(rec);
 	}
 	
-	//TODO configure me better please.
-	private IPool<ILogRecord> lrs = new SimplePool<ILogRecord>(10,new IObjectFactory<ILogRecord>(){
+	/*
+	 * As slf4j does, a Throwable last argument not used by a placeholder is taken as the record's
+	 * throwable, so its stack trace is written, rather than rendered into the message.
+	 */
 
-		@Override
-		public ILogRecord make() {
-			return new LogRecord();
-		}});
+	private static void addArgument(ILogRecord rec, String template, Object arg) {
+		if (takeThrowable(rec, template, arg, 1)) {
+			return;
+		}
+		rec.addArgument(arg);
+	}
+
+	private static void addArguments(ILogRecord rec, String template, Object arg1, Object arg2) {
+		rec.addArgument(arg1);
+		if (takeThrowable(rec, template, arg2, 2)) {
+			return;
+		}
+		rec.addArgument(arg2);
+	}
+
+	private static void addArguments(ILogRecord rec, String template, Object[] args) {
+		if (args == null || args.length == 0) {
+			return;
+		}
+		int n = args.length;
+		if (takeThrowable(rec, template, args[n - 1], n)) {
+			n--;
+		}
+		for (int i = 0; i < n; i++) {
+			rec.addArgument(args[i]);
+		}
+	}
+
+	/**
+	 * @param last the last argument.
+	 * @param count number of arguments.
+	 * @return true if the last argument was taken as the record's throwable.
+	 */
+	private static boolean takeThrowable(ILogRecord rec, String template, Object last, int count) {
+		if (last instanceof Throwable && MessageRenderer.countPlaceholders(template, count) < count) {
+			rec.setThrowable((Throwable)last);
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Whether a record at the level should be made: the level is enabled and the throttle, if any,
+	 * lets it through. Checked before a record is taken from the pool.
+	 * @param level
+	 * @return true to log.
+	 */
+	private boolean isLogging(Level level) {
+		return isLogging(level, 0L);
+	}
+
+	/**
+	 * @see #isLogging(Level)
+	 * @param level
+	 * @param mask marker bits of the record; any the logger has are logged whatever the level.
+	 * @return true to log.
+	 */
+	private boolean isLogging(Level level, long mask) {
+		if (this.level > level.intValue() && (mask & this.markers) == 0) {
+			return false;
+		}
+		Throttle t = this.throttle;
+		if (t == null) {
+			return true;
+		}
+		if (!t.allow()) {
+			return false;
+		}
+		Throttle.Summary summary = t.takeSummary();
+		if (summary != null) {
+			publishSummary(summary);
+		}
+		return true;
+	}
+
+	private void publishSummary(Throttle.Summary summary) {
+		ILogRecord rec = makeLogRecord("Logger {} suppressed {} records in the last {}ms", Level.WARN);
+		rec.addArgument(name);
+		rec.addArgument(summary.getSuppressed());
+		rec.addArgument(summary.getMillis());
+		publish(rec);
+	}
+
+	/**
+	 * Limit or sample the records this logger makes.
+	 * @param throttle null for none.
+	 */
+	public void setThrottle(Throttle throttle) {
+		this.throttle = throttle;
+		if (verbose && throttle != null) {
+			System.out.println("Logger " + getName() + " is throttled " + throttle);
+		}
+	}
+
+	public Throttle getThrottle() {
+		return throttle;
+	}
+
+	/**
+	 * Set markers whose records are logged whatever the level, e.g. so AUDIT records are always kept.
+	 * @param mask marker bits, see Markers.
+	 */
+	public void setMarkers(long mask) {
+		this.markers = mask;
+	}
+
+	public long getMarkers() {
+		return markers;
+	}
+
+	/**
+	 * Log a count of records the throttle suppressed that has not yet been logged.
+	 */
+	void reportSuppressed() {
+		Throttle t = this.throttle;
+		if (t != null) {
+			Throttle.Summary summary = t.takeUnreported();
+			if (summary != null) {
+				publishSummary(summary);
+			}
+		}
+	}
+
+	/**
+	 * Hand a completed record to each of our handlers.
+	 * @param rec
+	 */
+	void publish(ILogRecord rec) {
+		ILoggingHandler[] hs = this.handlerArray;
+		if (hs.length == 0) {
+			//nobody to process it so nobody will free it.
+			onFree(rec);
+			return;
+		}
+		//count the handlers we publish to, so handlers changing meanwhile cannot free it early or never.
+		rec.setCount(hs.length);
+		for (int i = 0; i < hs.length; i++) {
+			hs[i].publish(rec);
+		}
+	}
+
+	/**
+	 * Whether a record at the level would be written: the level is enabled and a handler would take
+	 * it. Only a query; the throttle, if any, is asked when the record is logged.
+	 * @param level
+	 * @return true if worth making the message.
+	 */
+	public boolean isLoggable(Level level) {
+		if (this.level > level.intValue()) {
+			return false;
+		}
+		ILoggingHandler[] hs = this.handlerArray;
+		for (int i = 0; i < hs.length; i++) {
+			if (hs[i].isEnabled(level)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Log a message made only if it will be written; no isDebugEnabled guard needed.
+	 * @param level
+	 * @param supplier
+	 */
+	public void log(Level level, IMessageSupplier supplier) {
+		if (!isLoggable(level) || !isLogging(level)) {
+			return;
+		}
+		String message;
+		try {
+			message = supplier.get();
+		} catch (Throwable t) {
+			message = "[FAILED message supplier " + t + "]";
+		}
+		publish(makeLogRecord(message, level));
+	}
+
+	/**
+	 * Log a parameterised message whose argument is rendered by the renderer into the {}, only
+	 * if it will be written. There are no per level forms of this as they would clash with
+	 * info(template, arg1, arg2) and the like when the last argument is null.
+	 * @param level
+	 * @param template
+	 * @param arg
+	 * @param renderer
+	 */
+	public <T> void log(Level level, String template, T arg, IMessageRenderer<T> renderer) {
+		if (!isLoggable(level) || !isLogging(level)) {
+			return;
+		}
+		StringBuilder buffer = renderBuffers.get();
+		buffer.setLength(0);
+		try {
+			renderer.render(arg, buffer);
+		} catch (Throwable t) {
+			buffer.append("[FAILED render ").append(t).append(']');
+		}
+		ILogRecord rec = makeLogRecord(template, level);
+		rec.addArgument(buffer.toString());
+		if (buffer.capacity() > 64 * 1024) {
+			renderBuffers.remove();
+		}
+		publish(rec);
+	}
+
+	public void trace(IMessageSupplier supplier) {
+		log(Level.TRACE, supplier);
+	}
+
+	public void debug(IMessageSupplier supplier) {
+		log(Level.DEBUG, supplier);
+	}
+
+	public void info(IMessageSupplier supplier) {
+		log(Level.INFO, supplier);
+	}
+
+	public void warn(IMessageSupplier supplier) {
+		log(Level.WARN, supplier);
+	}
+
+	public void error(IMessageSupplier supplier) {
+		log(Level.ERROR, supplier);
+	}
+
+	/**
+	 * Start building a record at the level, writing its fields straight into the record; finish
+	 * with log(). If the level is off the builder does nothing.
+	 * @param level
+	 * @return builder for the record.
+	 */
+	public LogBuilder at(Level level) {
+		if (!isLogging(level)) {
+			return LogBuilder.NOOP;
+		}
+		LogBuilder builder = builders.get();
+		if (builder.isAdding()) {
+			//a field's toString logs; do not spoil the record being built.
+			builder = new LogBuilder();
+		} else if (builder.isBusy()) {
+			//the last build never got to log(), e.g. working out a field threw.
+			builder.abandon();
+		}
+		return builder.start(this, makeLogRecord(null, level));
+	}
+
+	public LogBuilder atTrace() {
+		return at(Level.TRACE);
+	}
+
+	public LogBuilder atDebug() {
+		return at(Level.DEBUG);
+	}
+
+	public LogBuilder atInfo() {
+		return at(Level.INFO);
+	}
+
+	public LogBuilder atWarn() {
+		return at(Level.WARN);
+	}
+
+	public LogBuilder atError() {
+		return at(Level.ERROR);
+	}
+	
+	/**
+	 * Records come from the pool shared by all loggers in the log manager.
+	 */
+	IPool<ILogRecord> getRecordPool() {
+		return LowLatencyLogManager.getRecordPool();
+	}
 	//POOL: Performed 100000 LogWrites on 5 threads in 4,734.18 millis avg: 47us. Thats 0.05 per milli or 47.34 per sec.
 	//OLD: Performed 100000 LogWrites on 5 threads in 4,719.02 millis avg: 47us. Thats 0.05 per milli or 47.19 per sec.
-	private ILogRecord makeLogRecord(String message, Level level,int tid,String tname) {
+	private ILogRecord makeLogRecord(String message, Level level) {
 //		return new LogRecord(message,level,System.currentTimeMillis(),tid,tname,this);
-		ILogRecord lr = lrs.get();
+		ILogRecord lr = getRecordPool().get();
 		lr.setLogger(this);
 		lr.setLevel(level);
 		lr.setMessage(message);
-		lr.setThreadId(tid);
-		lr.setMillis(getTime());
-		lr.setThreadName(tname);
-		lr.setCount(handlers.size()); 
+		long nanos = LowLatencyLogManager.getClock().getNanos();
+		lr.setNanos(nanos);
+		lr.setMillis(nanos / IClock.NANOS_PER_MILLI);
+		if (getThreadInformation) {
+			lr.setThreadIdentity(ThreadIdentity.current());
+		} else {
+			lr.setThreadId(0);
+			lr.setThreadName(null);
+		}
+		lr.setMdc(OaktreeMDCAdapter.getMap());
+		lr.setMarkers(0L);
+		lr.setThrowable(null);
 		return lr;
 	}
 	
 	protected long getTime() {
-		return System.currentTimeMillis(); //TODO enable something else to be specified.
+		return LowLatencyLogManager.getClock().getMillis();
 	}
 	public String getName() {
 		return name;
@@ -154,42 +596,19 @@ public class LowLatencyLogger implements Logger,ILogger {
 	}
 	@Override
 	public void debug(String message, Object arg1) {
-		this.log(message, Level.DEBUG);
+		this.log(message, Level.DEBUG, arg1);
 	}
 	@Override
 	public void debug(String message, Object[] arg1) {
-		this.log(message, Level.DEBUG);
-	}
-	@Override
-	public void debug(String message, Throwable arg1) {
-		this.log(message, Level.DEBUG);
+		this.log(message, Level.DEBUG, arg1);
 	}
 	@Override
-	public void debug(Marker message, String arg1) {
-		this.log(message.toString(), Level.DEBUG);
+	public void debug(String message, Throwable t) {
+		this.log(message, Level.DEBUG, t);
 	}
 	@Override
 	public void debug(String message, Object arg1, Object arg2) {
-		this.log(message, Level.DEBUG);
-	}
-	@Override
-	public void debug(Marker mkr, String arg1, Object arg2) {
-		this.log(mkr.toString(), Level.DEBUG);
-	}
-	@Override
-	public void debug(Marker arg0, String arg1, Object[] arg2) {
-		// TODO Auto-generated method stub
-		
-	}
-	@Override
-	public void debug(Marker arg0, String arg1, Throwable arg2) {
-		// TODO Auto-generated method stub
-		
-	}
-	@Override
-	public void debug(Marker arg0, String arg1, Object arg2, Object arg3) {
-		// TODO Auto-generated method stub
-		
+		this.log(message, Level.DEBUG, arg1, arg2);
 	}
 	@Override
 	public void error(String message) {
@@ -197,238 +616,1289 @@ public class LowLatencyLogger implements Logger,ILogger {
 	}
 	@Override
 	public void error(String message, Object arg1) {
-		this.log(message, Level.ERROR);
+		this.log(message, Level.ERROR, arg1);
 	}
 	@Override
 	public void error(String message, Object[] arg1) {
-		this.log(message, Level.ERROR);
-	}
-	@Override
-	public void error(String message, Throwable arg1) {
-		
-		for (StackTraceElement ste:arg1.getStackTrace()) {
-			message += "\n\t";
-			message += ste.getMethodName() + " ("+ste.getClassName()+":"+ste.getLineNumber()+")";
-		}
-		this.log(message, Level.ERROR);
+		this.log(message, Level.ERROR, arg1);
 	}
 	@Override
-	public void error(Marker arg0, String arg1) {
-		// TODO Auto-generated method stub
-		
+	public void error(String message, Throwable t) {
+		this.log(message, Level.ERROR, t);
 	}
 	@Override
 	public void error(String message, Object arg1, Object arg2) {
-		this.log(message, Level.ERROR);
+		this.log(message, Level.ERROR, arg1, arg2);
 	}
 	@Override
-	public void error(Marker arg0, String arg1, Object arg2) {
-		// TODO Auto-generated method stub
-		
+	public void info(String message, Object arg1) {
+		this.log(message, Level.INFO, arg1);
 	}
 	@Override
-	public void error(Marker arg0, String arg1, Object[] arg2) {
-		// TODO Auto-generated method stub
-		
+	public void info(String message, Object[] arg1) {
+		this.log(message, Level.INFO, arg1);
 	}
 	@Override
-	public void error(Marker arg0, String arg1, Throwable arg2) {
-		// TODO Auto-generated method stub
-		
+	public void info(String message, Throwable t) {
+		this.log(message, Level.INFO, t);
 	}
 	@Override
-	public void error(Marker arg0, String arg1, Object arg2, Object arg3) {
-		// TODO Auto-generated method stub
-		
+	public void info(String message, Object arg1, Object arg2) {
+		this.log(message, Level.INFO, arg1, arg2);
 	}
 	@Override
-	public void info(String message, Object arg1) {
-		this.log(message, Level.INFO);
+	public boolean isDebugEnabled() {
+		return this.level <= Level.DEBUG.intValue();
 	}
 	@Override
-	public void info(String message, Object[] arg1) {
-		this.log(message, Level.INFO);
+	public boolean isErrorEnabled() {
+		return this.level <= Level.ERROR.intValue();
 	}
 	@Override
-	public void info(String message, Throwable arg1) {
-		this.log(message, Level.INFO);
+	public boolean isInfoEnabled() {
+		return this.level <= Level.INFO.intValue();
 	}
 	@Override
-	public void info(Marker arg0, String arg1) {
-		// TODO Auto-generated method stub
-		
+	public boolean isTraceEnabled() {
+		return this.level <= Level.TRACE.intValue();
 	}
 	@Override
-	public void info(String message, Object arg1, Object arg2) {
-		this.log(message, Level.INFO);
+	public boolean isWarnEnabled() {
+		return this.level >= Level.WARN.intValue();
 	}
 	@Override
-	public void info(Marker arg0, String arg1, Object arg2) {
-		// TODO Auto-generated method stub
-		
+	public void trace(String message) {
+		this.log(message, Level.TRACE);
 	}
 	@Override
-	public void info(Marker arg0, String arg1, Object[] arg2) {
-		// TODO Auto-generated method stub
-		
+	public void trace(String message, Object arg1) {
+		this.log(message, Level.TRACE, arg1);
 	}
 	@Override
-	public void info(Marker arg0, String arg1, Throwable arg2) {
-		// TODO Auto-generated method stub
-		
+	public void trace(String message, Object[] arg1) {
+		this.log(message, Level.TRACE, arg1);
 	}
 	@Override
-	public void info(Marker arg0, String arg1, Object arg2, Object arg3) {
-		// TODO Auto-generated method stub
-		
+	public void trace(String message, Throwable t) {
+		this.log(message, Level.TRACE, t);
 	}
 	@Override
-	public boolean isDebugEnabled() {
-		return this.level <= Level.DEBUG.intValue();
+	public void trace(String message, Object arg1, Object arg2) {
+		this.log(message, Level.TRACE, arg1, arg2);
 	}
 	@Override
-	public boolean isDebugEnabled(Marker arg0) {
-		// TODO Auto-generated method stub
-		return false;
+	public void warn(String message) {
+		this.log(message, Level.WARN);
 	}
 	@Override
-	public boolean isErrorEnabled() {
-		return this.level <= Level.ERROR.intValue();
+	public void warn(String message, Object arg1) {
+		this.log(message, Level.WARN, arg1);
 	}
 	@Override
-	public boolean isErrorEnabled(Marker arg0) {
-		// TODO Auto-generated method stub
-		return false;
+	public void warn(String message, Object[] arg1) {
+		this.log(message, Level.WARN, arg1);
 	}
 	@Override
-	public boolean isInfoEnabled() {
-		return this.level <= Level.INFO.intValue();
+	public void warn(String message, Throwable t) {
+		this.log(message, Level.WARN, t);
 	}
 	@Override
-	public boolean isInfoEnabled(Marker arg0) {
-		// TODO Auto-generated method stub
-		return false;
+	public void warn(String message, Object arg1, Object arg2) {
+		this.log(message, Level.WARN, arg1, arg2);
+	}
+	/*
+	 * Marker overloads. The marker and those it references become a mask of marker bits on the
+	 * record, see Markers; a logger's own markers are logged whatever its level.
+	 */
+
+	/**
+	 * Claim and fill a record for a marked message if the level or one of the markers is enabled.
+	 * @param marker
+	 * @param template
+	 * @param level
+	 * @return record or null if we are not logging it.
+	 */
+	private ILogRecord prepare(Marker marker, String template, Level level) {
+		long mask = Markers.maskOf(marker);
+		if (!isLogging(level, mask)) {
+			return null;
+		}
+		ILogRecord rec = makeLogRecord(template, level);
+		rec.setMarkers(mask);
+		return rec;
+	}
+
+	private boolean isEnabled(Level level, long mask) {
+		return this.level <= level.intValue() || (mask & this.markers) != 0;
 	}
+
 	@Override
-	public boolean isTraceEnabled() {
-		return this.level <= Level.TRACE.intValue();
+	public boolean isTraceEnabled(Marker marker) {
+		return isEnabled(Level.TRACE, Markers.maskOf(marker));
 	}
 	@Override
-	public boolean isTraceEnabled(Marker arg0) {
-		// TODO Auto-generated method stub
-		return false;
+	public void trace(Marker marker, String message) {
+		ILogRecord rec = prepare(marker, message, Level.TRACE);
+		if (rec != null) {
+			publish(rec);
+		}
 	}
 	@Override
-	public boolean isWarnEnabled() {
-		return this.level >= Level.WARN.intValue();
+	public void trace(Marker marker, String template, Object arg) {
+		ILogRecord rec = prepare(marker, template, Level.TRACE);
+		if (rec != null) {
+			addArgument(rec, template, arg);
+			publish(rec);
+		}
 	}
 	@Override
-	public boolean isWarnEnabled(Marker arg0) {
-		// TODO Auto-generated method stub
-		return false;
+	public void trace(Marker marker, String template, Object arg1, Object arg2) {
+		ILogRecord rec = prepare(marker, template, Level.TRACE);
+		if (rec != null) {
+			addArguments(rec, template, arg1, arg2);
+			publish(rec);
+		}
 	}
 	@Override
-	public void trace(String message) {
-		this.log(message, Level.TRACE);
+	public void trace(Marker marker, String template, Object[] args) {
+		ILogRecord rec = prepare(marker, template, Level.TRACE);
+		if (rec != null) {
+			addArguments(rec, template, args);
+			publish(rec);
+		}
 	}
 	@Override
-	public void trace(String message, Object arg1) {
-		this.log(message, Level.TRACE);
+	public void trace(Marker marker, String message, Throwable t) {
+		ILogRecord rec = prepare(marker, message, Level.TRACE);
+		if (rec != null) {
+			rec.setThrowable(t);
+			publish(rec);
+		}
 	}
+
 	@Override
-	public void trace(String message, Object[] arg1) {
-		this.log(message, Level.TRACE);
+	public boolean isDebugEnabled(Marker marker) {
+		return isEnabled(Level.DEBUG, Markers.maskOf(marker));
 	}
 	@Override
-	public void trace(String message, Throwable arg1) {
-		this.log(message, Level.TRACE);
+	public void debug(Marker marker, String message) {
+		ILogRecord rec = prepare(marker, message, Level.DEBUG);
+		if (rec != null) {
+			publish(rec);
+		}
 	}
 	@Override
-	public void trace(Marker arg0, String arg1) {
-		// TODO Auto-generated method stub
-		
+	public void debug(Marker marker, String template, Object arg) {
+		ILogRecord rec = prepare(marker, template, Level.DEBUG);
+		if (rec != null) {
+			addArgument(rec, template, arg);
+			publish(rec);
+		}
 	}
 	@Override
-	public void trace(String message, Object arg1, Object arg2) {
-		this.log(message, Level.TRACE);
+	public void debug(Marker marker, String template, Object arg1, Object arg2) {
+		ILogRecord rec = prepare(marker, template, Level.DEBUG);
+		if (rec != null) {
+			addArguments(rec, template, arg1, arg2);
+			publish(rec);
+		}
 	}
 	@Override
-	public void trace(Marker arg0, String arg1, Object arg2) {
-		// TODO Auto-generated method stub
-		
+	public void debug(Marker marker, String template, Object[] args) {
+		ILogRecord rec = prepare(marker, template, Level.DEBUG);
+		if (rec != null) {
+			addArguments(rec, template, args);
+			publish(rec);
+		}
 	}
 	@Override
-	public void trace(Marker arg0, String arg1, Object[] arg2) {
-		// TODO Auto-generated method stub
-		
+	public void debug(Marker marker, String message, Throwable t) {
+		ILogRecord rec = prepare(marker, message, Level.DEBUG);
+		if (rec != null) {
+			rec.setThrowable(t);
+			publish(rec);
+		}
 	}
+
 	@Override
-	public void trace(Marker arg0, String arg1, Throwable arg2) {
-		// TODO Auto-generated method stub
-		
+	public boolean isInfoEnabled(Marker marker) {
+		return isEnabled(Level.INFO, Markers.maskOf(marker));
 	}
 	@Override
-	public void trace(Marker arg0, String arg1, Object arg2, Object arg3) {
-		// TODO Auto-generated method stub
-		
+	public void info(Marker marker, String message) {
+		ILogRecord rec = prepare(marker, message, Level.INFO);
+		if (rec != null) {
+			publish(rec);
+		}
 	}
 	@Override
-	public void warn(String message) {
-		this.log(message, Level.WARN);
+	public void info(Marker marker, String template, Object arg) {
+		ILogRecord rec = prepare(marker, template, Level.INFO);
+		if (rec != null) {
+			addArgument(rec, template, arg);
+			publish(rec);
+		}
 	}
 	@Override
-	public void warn(String message, Object arg1) {
-		this.log(message, Level.WARN);
+	public void info(Marker marker, String template, Object arg1, Object arg2) {
+		ILogRecord rec = prepare(marker, template, Level.INFO);
+		if (rec != null) {
+			addArguments(rec, template, arg1, arg2);
+			publish(rec);
+		}
 	}
 	@Override
-	public void warn(String message, Object[] arg1) {
-		this.log(message, Level.WARN);
+	public void info(Marker marker, String template, Object[] args) {
+		ILogRecord rec = prepare(marker, template, Level.INFO);
+		if (rec != null) {
+			addArguments(rec, template, args);
+			publish(rec);
+		}
 	}
 	@Override
-	public void warn(String message, Throwable arg1) {
-		this.log(message, Level.WARN);
+	public void info(Marker marker, String message, Throwable t) {
+		ILogRecord rec = prepare(marker, message, Level.INFO);
+		if (rec != null) {
+			rec.setThrowable(t);
+			publish(rec);
+		}
 	}
+
 	@Override
-	public void warn(Marker arg0, String arg1) {
-		// TODO Auto-generated method stub
-		
+	public boolean isWarnEnabled(Marker marker) {
+		return isEnabled(Level.WARN, Markers.maskOf(marker));
 	}
 	@Override
-	public void warn(String message, Object arg1, Object arg2) {
-		this.log(message, Level.WARN);
+	public void warn(Marker marker, String message) {
+		ILogRecord rec = prepare(marker, message, Level.WARN);
+		if (rec != null) {
+			publish(rec);
+		}
 	}
 	@Override
-	public void warn(Marker arg0, String arg1, Object arg2) {
-		// TODO Auto-generated method stub
-		
+	public void warn(Marker marker, String template, Object arg) {
+		ILogRecord rec = prepare(marker, template, Level.WARN);
+		if (rec != null) {
+			addArgument(rec, template, arg);
+			publish(rec);
+		}
 	}
 	@Override
-	public void warn(Marker arg0, String arg1, Object[] arg2) {
-		// TODO Auto-generated method stub
-		
+	public void warn(Marker marker, String template, Object arg1, Object arg2) {
+		ILogRecord rec = prepare(marker, template, Level.WARN);
+		if (rec != null) {
+			addArguments(rec, template, arg1, arg2);
+			publish(rec);
+		}
 	}
 	@Override
-	public void warn(Marker arg0, String arg1, Throwable arg2) {
-		// TODO Auto-generated method stub
-		
+	public void warn(Marker marker, String template, Object[] args) {
+		ILogRecord rec = prepare(marker, template, Level.WARN);
+		if (rec != null) {
+			addArguments(rec, template, args);
+			publish(rec);
+		}
 	}
 	@Override
-	public void warn(Marker arg0, String arg1, Object arg2, Object arg3) {
-		// TODO Auto-generated method stub
-		
+	public void warn(Marker marker, String message, Throwable t) {
+		ILogRecord rec = prepare(marker, message, Level.WARN);
+		if (rec != null) {
+			rec.setThrowable(t);
+			publish(rec);
+		}
+	}
+
+	@Override
+	public boolean isErrorEnabled(Marker marker) {
+		return isEnabled(Level.ERROR, Markers.maskOf(marker));
+	}
+	@Override
+	public void error(Marker marker, String message) {
+		ILogRecord rec = prepare(marker, message, Level.ERROR);
+		if (rec != null) {
+			publish(rec);
+		}
+	}
+	@Override
+	public void error(Marker marker, String template, Object arg) {
+		ILogRecord rec = prepare(marker, template, Level.ERROR);
+		if (rec != null) {
+			addArgument(rec, template, arg);
+			publish(rec);
+		}
 	}
+	@Override
+	public void error(Marker marker, String template, Object arg1, Object arg2) {
+		ILogRecord rec = prepare(marker, template, Level.ERROR);
+		if (rec != null) {
+			addArguments(rec, template, arg1, arg2);
+			publish(rec);
+		}
+	}
+	@Override
+	public void error(Marker marker, String template, Object[] args) {
+		ILogRecord rec = prepare(marker, template, Level.ERROR);
+		if (rec != null) {
+			addArguments(rec, template, args);
+			publish(rec);
+		}
+	}
+	@Override
+	public void error(Marker marker, String message, Throwable t) {
+		ILogRecord rec = prepare(marker, message, Level.ERROR);
+		if (rec != null) {
+			rec.setThrowable(t);
+			publish(rec);
+		}
+	}
+
+	/*
+	 * Primitive overloads. These extend the slf4j api so that numbers (prices, quantities, ids)
+	 * can be logged without boxing; the values are held unboxed on the pooled record and only
+	 * rendered when a handler formats the message.
+	 */
+	
+	/**
+	 * Claim and fill a record for a parameterised message if the level is enabled.
+	 * @param template
+	 * @param level
+	 * @return record or null if we are not logging at this level.
+	 */
+	private ILogRecord prepare(String template, Level level) {
+		if (!isLogging(level)) {
+			return null;
+		}
+		return makeLogRecord(template,level);
+	}
+
+	/**
+	 * Log a parameterised message with primitive arguments. There is a form for every mix of long
+	 * and double up to four arguments; were one missing, Java would widen the longs of a call to
+	 * doubles, losing the low digits of e.g. order ids above 2^53.
+	 * @see #log(String, Level, Object)
+	 */
+	public void log(String template, Level level, long a) {
+		ILogRecord rec = prepare(template, level);
+		if (rec != null) {
+			rec.addArgument(a);
+			publish(rec);
+		}
+	}
+
+	public void log(String template, Level level, double a) {
+		ILogRecord rec = prepare(template, level);
+		if (rec != null) {
+			rec.addArgument(a);
+			publish(rec);
+		}
+	}
+
+	public void log(String template, Level level, long a, long b) {
+		ILogRecord rec = prepare(template, level);
+		if (rec != null) {
+			rec.addArgument(a);
+			rec.addArgument(b);
+			publish(rec);
+		}
+	}
+
+	public void log(String template, Level level, long a, double b) {
+		ILogRecord rec = prepare(template, level);
+		if (rec != null) {
+			rec.addArgument(a);
+			rec.addArgument(b);
+			publish(rec);
+		}
+	}
+
+	public void log(String template, Level level, double a, long b) {
+		ILogRecord rec = prepare(template, level);
+		if (rec != null) {
+			rec.addArgument(a);
+			rec.addArgument(b);
+			publish(rec);
+		}
+	}
+
+	public void log(String template, Level level, double a, double b) {
+		ILogRecord rec = prepare(template, level);
+		if (rec != null) {
+			rec.addArgument(a);
+			rec.addArgument(b);
+			publish(rec);
+		}
+	}
+
+	public void log(String template, Level level, long a, long b, long c) {
+		ILogRecord rec = prepare(template, level);
+		if (rec != null) {
+			rec.addArgument(a);
+			rec.addArgument(b);
+			rec.addArgument(c);
+			publish(rec);
+		}
+	}
+
+	public void log(String template, Level level, long a, long b, double c) {
+		ILogRecord rec = prepare(template, level);
+		if (rec != null) {
+			rec.addArgument(a);
+			rec.addArgument(b);
+			rec.addArgument(c);
+			publish(rec);
+		}
+	}
+
+	public void log(String template, Level level, long a, double b, long c) {
+		ILogRecord rec = prepare(template, level);
+		if (rec != null) {
+			rec.addArgument(a);
+			rec.addArgument(b);
+			rec.addArgument(c);
+			publish(rec);
+		}
+	}
+
+	public void log(String template, Level level, long a, double b, double c) {
+		ILogRecord rec = prepare(template, level);
+		if (rec != null) {
+			rec.addArgument(a);
+			rec.addArgument(b);
+			rec.addArgument(c);
+			publish(rec);
+		}
+	}
+
+	public void log(String template, Level level, double a, long b, long c) {
+		ILogRecord rec = prepare(template, level);
+		if (rec != null) {
+			rec.addArgument(a);
+			rec.addArgument(b);
+			rec.addArgument(c);
+			publish(rec);
+		}
+	}
+
+	public void log(String template, Level level, double a, long b, double c) {
+		ILogRecord rec = prepare(template, level);
+		if (rec != null) {
+			rec.addArgument(a);
+			rec.addArgument(b);
+			rec.addArgument(c);
+			publish(rec);
+		}
+	}
+
+	public void log(String template, Level level, double a, double b, long c) {
+		ILogRecord rec = prepare(template, level);
+		if (rec != null) {
+			rec.addArgument(a);
+			rec.addArgument(b);
+			rec.addArgument(c);
+			publish(rec);
+		}
+	}
+
+	public void log(String template, Level level, double a, double b, double c) {
+		ILogRecord rec = prepare(template, level);
+		if (rec != null) {
+			rec.addArgument(a);
+			rec.addArgument(b);
+			rec.addArgument(c);
+			publish(rec);
+		}
+	}
+
+	public void log(String template, Level level, long a, long b, long c, long d) {
+		ILogRecord rec = prepare(template, level);
+		if (rec != null) {
+			rec.addArgument(a);
+			rec.addArgument(b);
+			rec.addArgument(c);
+			rec.addArgument(d);
+			publish(rec);
+		}
+	}
+
+	public void log(String template, Level level, long a, long b, long c, double d) {
+		ILogRecord rec = prepare(template, level);
+		if (rec != null) {
+			rec.addArgument(a);
+			rec.addArgument(b);
+			rec.addArgument(c);
+			rec.addArgument(d);
+			publish(rec);
+		}
+	}
+
+	public void log(String template, Level level, long a, long b, double c, long d) {
+		ILogRecord rec = prepare(template, level);
+		if (rec != null) {
+			rec.addArgument(a);
+			rec.addArgument(b);
+			rec.addArgument(c);
+			rec.addArgument(d);
+			publish(rec);
+		}
+	}
+
+	public void log(String template, Level level, long a, long b, double c, double d) {
+		ILogRecord rec = prepare(template, level);
+		if (rec != null) {
+			rec.addArgument(a);
+			rec.addArgument(b);
+			rec.addArgument(c);
+			rec.addArgument(d);
+			publish(rec);
+		}
+	}
+
+	public void log(String template, Level level, long a, double b, long c, long d) {
+		ILogRecord rec = prepare(template, level);
+		if (rec != null) {
+			rec.addArgument(a);
+			rec.addArgument(b);
+			rec.addArgument(c);
+			rec.addArgument(d);
+			publish(rec);
+		}
+	}
+
+	public void log(String template, Level level, long a, double b, long c, double d) {
+		ILogRecord rec = prepare(template, level);
+		if (rec != null) {
+			rec.addArgument(a);
+			rec.addArgument(b);
+			rec.addArgument(c);
+			rec.addArgument(d);
+			publish(rec);
+		}
+	}
+
+	public void log(String template, Level level, long a, double b, double c, long d) {
+		ILogRecord rec = prepare(template, level);
+		if (rec != null) {
+			rec.addArgument(a);
+			rec.addArgument(b);
+			rec.addArgument(c);
+			rec.addArgument(d);
+			publish(rec);
+		}
+	}
+
+	public void log(String template, Level level, long a, double b, double c, double d) {
+		ILogRecord rec = prepare(template, level);
+		if (rec != null) {
+			rec.addArgument(a);
+			rec.addArgument(b);
+			rec.addArgument(c);
+			rec.addArgument(d);
+			publish(rec);
+		}
+	}
+
+	public void log(String template, Level level, double a, long b, long c, long d) {
+		ILogRecord rec = prepare(template, level);
+		if (rec != null) {
+			rec.addArgument(a);
+			rec.addArgument(b);
+			rec.addArgument(c);
+			rec.addArgument(d);
+			publish(rec);
+		}
+	}
+
+	public void log(String template, Level level, double a, long b, long c, double d) {
+		ILogRecord rec = prepare(template, level);
+		if (rec != null) {
+			rec.addArgument(a);
+			rec.addArgument(b);
+			rec.addArgument(c);
+			rec.addArgument(d);
+			publish(rec);
+		}
+	}
+
+	public void log(String template, Level level, double a, long b, double c, long d) {
+		ILogRecord rec = prepare(template, level);
+		if (rec != null) {
+			rec.addArgument(a);
+			rec.addArgument(b);
+			rec.addArgument(c);
+			rec.addArgument(d);
+			publish(rec);
+		}
+	}
+
+	public void log(String template, Level level, double a, long b, double c, double d) {
+		ILogRecord rec = prepare(template, level);
+		if (rec != null) {
+			rec.addArgument(a);
+			rec.addArgument(b);
+			rec.addArgument(c);
+			rec.addArgument(d);
+			publish(rec);
+		}
+	}
+
+	public void log(String template, Level level, double a, double b, long c, long d) {
+		ILogRecord rec = prepare(template, level);
+		if (rec != null) {
+			rec.addArgument(a);
+			rec.addArgument(b);
+			rec.addArgument(c);
+			rec.addArgument(d);
+			publish(rec);
+		}
+	}
+
+	public void log(String template, Level level, double a, double b, long c, double d) {
+		ILogRecord rec = prepare(template, level);
+		if (rec != null) {
+			rec.addArgument(a);
+			rec.addArgument(b);
+			rec.addArgument(c);
+			rec.addArgument(d);
+			publish(rec);
+		}
+	}
+
+	public void log(String template, Level level, double a, double b, double c, long d) {
+		ILogRecord rec = prepare(template, level);
+		if (rec != null) {
+			rec.addArgument(a);
+			rec.addArgument(b);
+			rec.addArgument(c);
+			rec.addArgument(d);
+			publish(rec);
+		}
+	}
+
+	public void log(String template, Level level, double a, double b, double c, double d) {
+		ILogRecord rec = prepare(template, level);
+		if (rec != null) {
+			rec.addArgument(a);
+			rec.addArgument(b);
+			rec.addArgument(c);
+			rec.addArgument(d);
+			publish(rec);
+		}
+	}
+
+	public void trace(String template, long a) {
+		log(template, Level.TRACE, a);
+	}
+
+	public void trace(String template, double a) {
+		log(template, Level.TRACE, a);
+	}
+
+	public void trace(String template, long a, long b) {
+		log(template, Level.TRACE, a, b);
+	}
+
+	public void trace(String template, long a, double b) {
+		log(template, Level.TRACE, a, b);
+	}
+
+	public void trace(String template, double a, long b) {
+		log(template, Level.TRACE, a, b);
+	}
+
+	public void trace(String template, double a, double b) {
+		log(template, Level.TRACE, a, b);
+	}
+
+	public void trace(String template, long a, long b, long c) {
+		log(template, Level.TRACE, a, b, c);
+	}
+
+	public void trace(String template, long a, long b, double c) {
+		log(template, Level.TRACE, a, b, c);
+	}
+
+	public void trace(String template, long a, double b, long c) {
+		log(template, Level.TRACE, a, b, c);
+	}
+
+	public void trace(String template, long a, double b, double c) {
+		log(template, Level.TRACE, a, b, c);
+	}
+
+	public void trace(String template, double a, long b, long c) {
+		log(template, Level.TRACE, a, b, c);
+	}
+
+	public void trace(String template, double a, long b, double c) {
+		log(template, Level.TRACE, a, b, c);
+	}
+
+	public void trace(String template, double a, double b, long c) {
+		log(template, Level.TRACE, a, b, c);
+	}
+
+	public void trace(String template, double a, double b, double c) {
+		log(template, Level.TRACE, a, b, c);
+	}
+
+	public void trace(String template, long a, long b, long c, long d) {
+		log(template, Level.TRACE, a, b, c, d);
+	}
+
+	public void trace(String template, long a, long b, long c, double d) {
+		log(template, Level.TRACE, a, b, c, d);
+	}
+
+	public void trace(String template, long a, long b, double c, long d) {
+		log(template, Level.TRACE, a, b, c, d);
+	}
+
+	public void trace(String template, long a, long b, double c, double d) {
+		log(template, Level.TRACE, a, b, c, d);
+	}
+
+	public void trace(String template, long a, double b, long c, long d) {
+		log(template, Level.TRACE, a, b, c, d);
+	}
+
+	public void trace(String template, long a, double b, long c, double d) {
+		log(template, Level.TRACE, a, b, c, d);
+	}
+
+	public void trace(String template, long a, double b, double c, long d) {
+		log(template, Level.TRACE, a, b, c, d);
+	}
+
+	public void trace(String template, long a, double b, double c, double d) {
+		log(template, Level.TRACE, a, b, c, d);
+	}
+
+	public void trace(String template, double a, long b, long c, long d) {
+		log(template, Level.TRACE, a, b, c, d);
+	}
+
+	public void trace(String template, double a, long b, long c, double d) {
+		log(template, Level.TRACE, a, b, c, d);
+	}
+
+	public void trace(String template, double a, long b, double c, long d) {
+		log(template, Level.TRACE, a, b, c, d);
+	}
+
+	public void trace(String template, double a, long b, double c, double d) {
+		log(template, Level.TRACE, a, b, c, d);
+	}
+
+	public void trace(String template, double a, double b, long c, long d) {
+		log(template, Level.TRACE, a, b, c, d);
+	}
+
+	public void trace(String template, double a, double b, long c, double d) {
+		log(template, Level.TRACE, a, b, c, d);
+	}
+
+	public void trace(String template, double a, double b, double c, long d) {
+		log(template, Level.TRACE, a, b, c, d);
+	}
+
+	public void trace(String template, double a, double b, double c, double d) {
+		log(template, Level.TRACE, a, b, c, d);
+	}
+
+	public void debug(String template, long a) {
+		log(template, Level.DEBUG, a);
+	}
+
+	public void debug(String template, double a) {
+		log(template, Level.DEBUG, a);
+	}
+
+	public void debug(String template, long a, long b) {
+		log(template, Level.DEBUG, a, b);
+	}
+
+	public void debug(String template, long a, double b) {
+		log(template, Level.DEBUG, a, b);
+	}
+
+	public void debug(String template, double a, long b) {
+		log(template, Level.DEBUG, a, b);
+	}
+
+	public void debug(String template, double a, double b) {
+		log(template, Level.DEBUG, a, b);
+	}
+
+	public void debug(String template, long a, long b, long c) {
+		log(template, Level.DEBUG, a, b, c);
+	}
+
+	public void debug(String template, long a, long b, double c) {
+		log(template, Level.DEBUG, a, b, c);
+	}
+
+	public void debug(String template, long a, double b, long c) {
+		log(template, Level.DEBUG, a, b, c);
+	}
+
+	public void debug(String template, long a, double b, double c) {
+		log(template, Level.DEBUG, a, b, c);
+	}
+
+	public void debug(String template, double a, long b, long c) {
+		log(template, Level.DEBUG, a, b, c);
+	}
+
+	public void debug(String template, double a, long b, double c) {
+		log(template, Level.DEBUG, a, b, c);
+	}
+
+	public void debug(String template, double a, double b, long c) {
+		log(template, Level.DEBUG, a, b, c);
+	}
+
+	public void debug(String template, double a, double b, double c) {
+		log(template, Level.DEBUG, a, b, c);
+	}
+
+	public void debug(String template, long a, long b, long c, long d) {
+		log(template, Level.DEBUG, a, b, c, d);
+	}
+
+	public void debug(String template, long a, long b, long c, double d) {
+		log(template, Level.DEBUG, a, b, c, d);
+	}
+
+	public void debug(String template, long a, long b, double c, long d) {
+		log(template, Level.DEBUG, a, b, c, d);
+	}
+
+	public void debug(String template, long a, long b, double c, double d) {
+		log(template, Level.DEBUG, a, b, c, d);
+	}
+
+	public void debug(String template, long a, double b, long c, long d) {
+		log(template, Level.DEBUG, a, b, c, d);
+	}
+
+	public void debug(String template, long a, double b, long c, double d) {
+		log(template, Level.DEBUG, a, b, c, d);
+	}
+
+	public void debug(String template, long a, double b, double c, long d) {
+		log(template, Level.DEBUG, a, b, c, d);
+	}
+
+	public void debug(String template, long a, double b, double c, double d) {
+		log(template, Level.DEBUG, a, b, c, d);
+	}
+
+	public void debug(String template, double a, long b, long c, long d) {
+		log(template, Level.DEBUG, a, b, c, d);
+	}
+
+	public void debug(String template, double a, long b, long c, double d) {
+		log(template, Level.DEBUG, a, b, c, d);
+	}
+
+	public void debug(String template, double a, long b, double c, long d) {
+		log(template, Level.DEBUG, a, b, c, d);
+	}
+
+	public void debug(String template, double a, long b, double c, double d) {
+		log(template, Level.DEBUG, a, b, c, d);
+	}
+
+	public void debug(String template, double a, double b, long c, long d) {
+		log(template, Level.DEBUG, a, b, c, d);
+	}
+
+	public void debug(String template, double a, double b, long c, double d) {
+		log(template, Level.DEBUG, a, b, c, d);
+	}
+
+	public void debug(String template, double a, double b, double c, long d) {
+		log(template, Level.DEBUG, a, b, c, d);
+	}
+
+	public void debug(String template, double a, double b, double c, double d) {
+		log(template, Level.DEBUG, a, b, c, d);
+	}
+
+	public void info(String template, long a) {
+		log(template, Level.INFO, a);
+	}
+
+	public void info(String template, double a) {
+		log(template, Level.INFO, a);
+	}
+
+	public void info(String template, long a, long b) {
+		log(template, Level.INFO, a, b);
+	}
+
+	public void info(String template, long a, double b) {
+		log(template, Level.INFO, a, b);
+	}
+
+	public void info(String template, double a, long b) {
+		log(template, Level.INFO, a, b);
+	}
+
+	public void info(String template, double a, double b) {
+		log(template, Level.INFO, a, b);
+	}
+
+	public void info(String template, long a, long b, long c) {
+		log(template, Level.INFO, a, b, c);
+	}
+
+	public void info(String template, long a, long b, double c) {
+		log(template, Level.INFO, a, b, c);
+	}
+
+	public void info(String template, long a, double b, long c) {
+		log(template, Level.INFO, a, b, c);
+	}
+
+	public void info(String template, long a, double b, double c) {
+		log(template, Level.INFO, a, b, c);
+	}
+
+	public void info(String template, double a, long b, long c) {
+		log(template, Level.INFO, a, b, c);
+	}
+
+	public void info(String template, double a, long b, double c) {
+		log(template, Level.INFO, a, b, c);
+	}
+
+	public void info(String template, double a, double b, long c) {
+		log(template, Level.INFO, a, b, c);
+	}
+
+	public void info(String template, double a, double b, double c) {
+		log(template, Level.INFO, a, b, c);
+	}
+
+	public void info(String template, long a, long b, long c, long d) {
+		log(template, Level.INFO, a, b, c, d);
+	}
+
+	public void info(String template, long a, long b, long c, double d) {
+		log(template, Level.INFO, a, b, c, d);
+	}
+
+	public void info(String template, long a, long b, double c, long d) {
+		log(template, Level.INFO, a, b, c, d);
+	}
+
+	public void info(String template, long a, long b, double c, double d) {
+		log(template, Level.INFO, a, b, c, d);
+	}
+
+	public void info(String template, long a, double b, long c, long d) {
+		log(template, Level.INFO, a, b, c, d);
+	}
+
+	public void info(String template, long a, double b, long c, double d) {
+		log(template, Level.INFO, a, b, c, d);
+	}
+
+	public void info(String template, long a, double b, double c, long d) {
+		log(template, Level.INFO, a, b, c, d);
+	}
+
+	public void info(String template, long a, double b, double c, double d) {
+		log(template, Level.INFO, a, b, c, d);
+	}
+
+	public void info(String template, double a, long b, long c, long d) {
+		log(template, Level.INFO, a, b, c, d);
+	}
+
+	public void info(String template, double a, long b, long c, double d) {
+		log(template, Level.INFO, a, b, c, d);
+	}
+
+	public void info(String template, double a, long b, double c, long d) {
+		log(template, Level.INFO, a, b, c, d);
+	}
+
+	public void info(String template, double a, long b, double c, double d) {
+		log(template, Level.INFO, a, b, c, d);
+	}
+
+	public void info(String template, double a, double b, long c, long d) {
+		log(template, Level.INFO, a, b, c, d);
+	}
+
+	public void info(String template, double a, double b, long c, double d) {
+		log(template, Level.INFO, a, b, c, d);
+	}
+
+	public void info(String template, double a, double b, double c, long d) {
+		log(template, Level.INFO, a, b, c, d);
+	}
+
+	public void info(String template, double a, double b, double c, double d) {
+		log(template, Level.INFO, a, b, c, d);
+	}
+
+	public void warn(String template, long a) {
+		log(template, Level.WARN, a);
+	}
+
+	public void warn(String template, double a) {
+		log(template, Level.WARN, a);
+	}
+
+	public void warn(String template, long a, long b) {
+		log(template, Level.WARN, a, b);
+	}
+
+	public void warn(String template, long a, double b) {
+		log(template, Level.WARN, a, b);
+	}
+
+	public void warn(String template, double a, long b) {
+		log(template, Level.WARN, a, b);
+	}
+
+	public void warn(String template, double a, double b) {
+		log(template, Level.WARN, a, b);
+	}
+
+	public void warn(String template, long a, long b, long c) {
+		log(template, Level.WARN, a, b, c);
+	}
+
+	public void warn(String template, long a, long b, double c) {
+		log(template, Level.WARN, a, b, c);
+	}
+
+	public void warn(String template, long a, double b, long c) {
+		log(template, Level.WARN, a, b, c);
+	}
+
+	public void warn(String template, long a, double b, double c) {
+		log(template, Level.WARN, a, b, c);
+	}
+
+	public void warn(String template, double a, long b, long c) {
+		log(template, Level.WARN, a, b, c);
+	}
+
+	public void warn(String template, double a, long b, double c) {
+		log(template, Level.WARN, a, b, c);
+	}
+
+	public void warn(String template, double a, double b, long c) {
+		log(template, Level.WARN, a, b, c);
+	}
+
+	public void warn(String template, double a, double b, double c) {
+		log(template, Level.WARN, a, b, c);
+	}
+
+	public void warn(String template, long a, long b, long c, long d) {
+		log(template, Level.WARN, a, b, c, d);
+	}
+
+	public void warn(String template, long a, long b, long c, double d) {
+		log(template, Level.WARN, a, b, c, d);
+	}
+
+	public void warn(String template, long a, long b, double c, long d) {
+		log(template, Level.WARN, a, b, c, d);
+	}
+
+	public void warn(String template, long a, long b, double c, double d) {
+		log(template, Level.WARN, a, b, c, d);
+	}
+
+	public void warn(String template, long a, double b, long c, long d) {
+		log(template, Level.WARN, a, b, c, d);
+	}
+
+	public void warn(String template, long a, double b, long c, double d) {
+		log(template, Level.WARN, a, b, c, d);
+	}
+
+	public void warn(String template, long a, double b, double c, long d) {
+		log(template, Level.WARN, a, b, c, d);
+	}
+
+	public void warn(String template, long a, double b, double c, double d) {
+		log(template, Level.WARN, a, b, c, d);
+	}
+
+	public void warn(String template, double a, long b, long c, long d) {
+		log(template, Level.WARN, a, b, c, d);
+	}
+
+	public void warn(String template, double a, long b, long c, double d) {
+		log(template, Level.WARN, a, b, c, d);
+	}
+
+	public void warn(String template, double a, long b, double c, long d) {
+		log(template, Level.WARN, a, b, c, d);
+	}
+
+	public void warn(String template, double a, long b, double c, double d) {
+		log(template, Level.WARN, a, b, c, d);
+	}
+
+	public void warn(String template, double a, double b, long c, long d) {
+		log(template, Level.WARN, a, b, c, d);
+	}
+
+	public void warn(String template, double a, double b, long c, double d) {
+		log(template, Level.WARN, a, b, c, d);
+	}
+
+	public void warn(String template, double a, double b, double c, long d) {
+		log(template, Level.WARN, a, b, c, d);
+	}
+
+	public void warn(String template, double a, double b, double c, double d) {
+		log(template, Level.WARN, a, b, c, d);
+	}
+
+	public void error(String template, long a) {
+		log(template, Level.ERROR, a);
+	}
+
+	public void error(String template, double a) {
+		log(template, Level.ERROR, a);
+	}
+
+	public void error(String template, long a, long b) {
+		log(template, Level.ERROR, a, b);
+	}
+
+	public void error(String template, long a, double b) {
+		log(template, Level.ERROR, a, b);
+	}
+
+	public void error(String template, double a, long b) {
+		log(template, Level.ERROR, a, b);
+	}
+
+	public void error(String template, double a, double b) {
+		log(template, Level.ERROR, a, b);
+	}
+
+	public void error(String template, long a, long b, long c) {
+		log(template, Level.ERROR, a, b, c);
+	}
+
+	public void error(String template, long a, long b, double c) {
+		log(template, Level.ERROR, a, b, c);
+	}
+
+	public void error(String template, long a, double b, long c) {
+		log(template, Level.ERROR, a, b, c);
+	}
+
+	public void error(String template, long a, double b, double c) {
+		log(template, Level.ERROR, a, b, c);
+	}
+
+	public void error(String template, double a, long b, long c) {
+		log(template, Level.ERROR, a, b, c);
+	}
+
+	public void error(String template, double a, long b, double c) {
+		log(template, Level.ERROR, a, b, c);
+	}
+
+	public void error(String template, double a, double b, long c) {
+		log(template, Level.ERROR, a, b, c);
+	}
+
+	public void error(String template, double a, double b, double c) {
+		log(template, Level.ERROR, a, b, c);
+	}
+
+	public void error(String template, long a, long b, long c, long d) {
+		log(template, Level.ERROR, a, b, c, d);
+	}
+
+	public void error(String template, long a, long b, long c, double d) {
+		log(template, Level.ERROR, a, b, c, d);
+	}
+
+	public void error(String template, long a, long b, double c, long d) {
+		log(template, Level.ERROR, a, b, c, d);
+	}
+
+	public void error(String template, long a, long b, double c, double d) {
+		log(template, Level.ERROR, a, b, c, d);
+	}
+
+	public void error(String template, long a, double b, long c, long d) {
+		log(template, Level.ERROR, a, b, c, d);
+	}
+
+	public void error(String template, long a, double b, long c, double d) {
+		log(template, Level.ERROR, a, b, c, d);
+	}
+
+	public void error(String template, long a, double b, double c, long d) {
+		log(template, Level.ERROR, a, b, c, d);
+	}
+
+	public void error(String template, long a, double b, double c, double d) {
+		log(template, Level.ERROR, a, b, c, d);
+	}
+
+	public void error(String template, double a, long b, long c, long d) {
+		log(template, Level.ERROR, a, b, c, d);
+	}
+
+	public void error(String template, double a, long b, long c, double d) {
+		log(template, Level.ERROR, a, b, c, d);
+	}
+
+	public void error(String template, double a, long b, double c, long d) {
+		log(template, Level.ERROR, a, b, c, d);
+	}
+
+	public void error(String template, double a, long b, double c, double d) {
+		log(template, Level.ERROR, a, b, c, d);
+	}
+
+	public void error(String template, double a, double b, long c, long d) {
+		log(template, Level.ERROR, a, b, c, d);
+	}
+
+	public void error(String template, double a, double b, long c, double d) {
+		log(template, Level.ERROR, a, b, c, d);
+	}
+
+	public void error(String template, double a, double b, double c, long d) {
+		log(template, Level.ERROR, a, b, c, d);
+	}
+
+	public void error(String template, double a, double b, double c, double d) {
+		log(template, Level.ERROR, a, b, c, d);
+	}
+
 	public void clearHandlers() {
 		handlers.clear();
+		updateHandlerArray();
 	}
 	public void addHandler(ILoggingHandler handler) {
 		if (handler == null) {
 			return;
 		}
 		handlers.add(handler);
+		updateHandlerArray();
 		System.out.println("Adding handler " + handler.getName() + " to logger " + getName());
 	}
 	ILoggingHandler[] getHandlers() {
-		return handlers.toArray(new ILoggingHandler[handlers.size()]);
+		return handlerArray.clone();
 	}
 
 	@Override
@@ -445,7 +1915,7 @@ public class LowLatencyLogger implements Logger,ILogger {
 	}
 	@Override
 	public void onFree(ILogRecord logRecord) {
-		lrs.free(logRecord);
+		getRecordPool().free(logRecord);
 	}
 	
 }
@@ -0,0 +1,122 @@
+package com.oaktree.core.logging;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Marker;
+
+import com.oaktree.core.logging.markers.OaktreeMarker;
+
+/**
+ * Maps marker names to bits of a long, so records, loggers and handlers filter on markers with a single
+ * AND rather than walking marker references or comparing names. Names in the markers property get
+ * their bits at start up, in order; others on first use. There are 64 bits; markers after that have
+ * none so match no filter and are not shown by %marker.
+ *
+ * @author Oak Tree Designs Ltd
+ */
+public final class Markers {
+
+	public final static int MAX_MARKERS = 64;
+
+	private final static ConcurrentHashMap<String, Long> bits = new ConcurrentHashMap<String, Long>();
+	/**
+	 * Marker names by bit position.
+	 */
+	private final static String[] names = new String[MAX_MARKERS];
+	private static int next = 0;
+
+	private Markers() {}
+
+	/**
+	 * Get the bit of a marker name, giving it the next free one if it has none.
+	 * @param name
+	 * @return the bit, or 0 if all are taken.
+	 */
+	public static long bitOf(String name) {
+		Long bit = bits.get(name);
+		if (bit != null) {
+			return bit.longValue();
+		}
+		return register(name);
+	}
+
+	private static synchronized long register(String name) {
+		Long bit = bits.get(name);
+		if (bit != null) {
+			return bit.longValue();
+		}
+		if (next == MAX_MARKERS) {
+			System.err.println("SLF4J No marker bits left for " + name + "; it will match no marker filter");
+			bit = Long.valueOf(0L);
+		} else {
+			names[next] = name;
+			bit = Long.valueOf(1L << next++);
+		}
+		bits.put(name, bit);
+		return bit.longValue();
+	}
+
+	/**
+	 * Get the mask of a marker and of any markers it references. Markers from MarkerFactory keep their
+	 * masks; any other Marker is walked each time.
+	 * @param marker
+	 * @return mask, 0 if the marker is null.
+	 */
+	public static long maskOf(Marker marker) {
+		if (marker == null) {
+			return 0L;
+		}
+		if (marker instanceof OaktreeMarker) {
+			return ((OaktreeMarker)marker).getMask();
+		}
+		long mask = bitOf(marker.getName());
+		if (marker.hasReferences()) {
+			Iterator<?> i = marker.iterator();
+			while (i.hasNext()) {
+				mask |= maskOf((Marker)i.next());
+			}
+		}
+		return mask;
+	}
+
+	/**
+	 * Get the mask of a list of marker names, as found in the properties file.
+	 * @param list e.g. AUDIT,SECURITY
+	 * @return mask, 0 if the list is null or empty.
+	 */
+	public static long parse(String list) {
+		long mask = 0L;
+		if (list == null) {
+			return mask;
+		}
+		for (String name:list.split(",")) {
+			name = name.trim();
+			if (name.length() > 0) {
+				mask |= bitOf(name);
+			}
+		}
+		return mask;
+	}
+
+	/**
+	 * Render the names of the markers in the mask, separated by commas.
+	 * @param mask
+	 * @param buffer
+	 */
+	public static void appendNames(long mask, StringBuilder buffer) {
+		boolean first = true;
+		while (mask != 0) {
+			int b = Long.numberOfTrailingZeros(mask);
+			mask &= mask - 1;
+			String name = names[b];
+			if (name != null) {
+				if (!first) {
+					buffer.append(',');
+				}
+				buffer.append(name);
+				first = false;
+			}
+		}
+	}
+}
@@ -0,0 +1,132 @@
+package com.oaktree.core.logging;
+
+import java.util.Arrays;
+
+/**
+ * Renders slf4j style parameterised messages e.g. "order {} filled at {}". The arguments are held
+ * on the log record and only substituted when a handler asks for the message, which for background
+ * handlers means the string building happens on the processing thread rather than the caller's.
+ *
+ * Follows the slf4j conventions:
+ * <li>each {} is replaced by the next argument; surplus placeholders are left as they are</li>
+ * <li>\{} is an escaped placeholder and renders as {}</li>
+ * <li>\\{} renders a single \ followed by the argument</li>
+ * <li>arrays are rendered by content rather than by identity</li>
+ *
+ * @author Oak Tree Designs Ltd
+ *
+ */
+public class MessageRenderer {
+
+	private final static char DELIM_START = '{';
+	private final static char DELIM_STOP = '}';
+	private final static char ESCAPE = '\\';
+	private final static String DELIM = "{}";
+
+	/**
+	 * Render the template of a record, substituting its arguments, into the buffer.
+	 * @param template
+	 * @param record
+	 * @param buffer
+	 */
+	public static void render(String template, ILogRecord record, StringBuilder buffer) {
+		if (template == null) {
+			buffer.append((String)null);
+			return;
+		}
+		int count = record.getArgumentCount();
+		int i = 0;
+		int len = template.length();
+		for (int arg = 0; arg < count; arg++) {
+			int j = template.indexOf(DELIM, i);
+			if (j == -1) {
+				break;
+			}
+			if (isEscaped(template, j)) {
+				if (isEscaped(template, j - 1)) {
+					//double escape; keep one backslash and still substitute.
+					buffer.append(template, i, j - 1);
+					record.appendArgument(arg, buffer);
+				} else {
+					//escaped placeholder; render literally and do not consume the argument.
+					buffer.append(template, i, j - 1);
+					buffer.append(DELIM_START);
+					buffer.append(DELIM_STOP);
+					arg--;
+				}
+			} else {
+				buffer.append(template, i, j);
+				record.appendArgument(arg, buffer);
+			}
+			i = j + 2;
+		}
+		buffer.append(template, i, len);
+	}
+
+	/**
+	 * Count the placeholders arguments would be substituted into, as render does.
+	 * @param template
+	 * @param max stop counting at this many.
+	 * @return number of placeholders, at most max.
+	 */
+	public static int countPlaceholders(String template, int max) {
+		if (template == null) {
+			return 0;
+		}
+		int count = 0;
+		int i = 0;
+		while (count < max) {
+			int j = template.indexOf(DELIM, i);
+			if (j == -1) {
+				break;
+			}
+			if (!isEscaped(template, j) || isEscaped(template, j - 1)) {
+				count++;
+			}
+			i = j + 2;
+		}
+		return count;
+	}
+
+	private static boolean isEscaped(String template, int delimIndex) {
+		return delimIndex > 0 && template.charAt(delimIndex - 1) == ESCAPE;
+	}
+
+	/**
+	 * Append an object argument. Arrays are rendered by content and a failing toString will
+	 * not stop the rest of the record being written.
+	 * @param o
+	 * @param buffer
+	 */
+	public static void appendObject(Object o, StringBuilder buffer) {
+		if (o == null) {
+			buffer.append("null");
+			return;
+		}
+		try {
+			if (!o.getClass().isArray()) {
+				buffer.append(o.toString());
+			} else if (o instanceof Object[]) {
+				buffer.append(Arrays.deepToString((Object[])o));
+			} else if (o instanceof long[]) {
+				buffer.append(Arrays.toString((long[])o));
+			} else if (o instanceof int[]) {
+				buffer.append(Arrays.toString((int[])o));
+			} else if (o instanceof double[]) {
+				buffer.append(Arrays.toString((double[])o));
+			} else if (o instanceof float[]) {
+				buffer.append(Arrays.toString((float[])o));
+			} else if (o instanceof short[]) {
+				buffer.append(Arrays.toString((short[])o));
+			} else if (o instanceof byte[]) {
+				buffer.append(Arrays.toString((byte[])o));
+			} else if (o instanceof char[]) {
+				buffer.append(Arrays.toString((char[])o));
+			} else if (o instanceof boolean[]) {
+				buffer.append(Arrays.toString((boolean[])o));
+			}
+		} catch (Throwable t) {
+			buffer.append("[FAILED toString()]");
+		}
+	}
+}
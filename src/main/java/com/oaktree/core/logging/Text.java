@@ -64,6 +64,8 @@ public class Text {
 	
 	/**
 	 * Get the millis time for midnight today. Use for getting duration in millis
+	 * This is the day the class was loaded and does not move on at midnight; for log times
+	 * use TimestampRenderer.
 	 * @return today (midnight in millis)
 	 */
 	public static long getToday() {
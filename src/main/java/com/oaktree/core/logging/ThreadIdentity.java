@@ -0,0 +1,119 @@
+package com.oaktree.core.logging;
+
+import java.nio.charset.Charset;
+
+/**
+ * The id and name of a thread as stamped on its log records, with the name and id already in the
+ * forms the formatters and binary writers write, so they are worked out once per thread rather than
+ * once per record.
+ *
+ * Each thread keeps its identity in a thread local. The name is checked against the thread on every
+ * get, which is a field read, and only if the thread has been renamed is a new identity made. An
+ * identity is never changed once made, so records already queued for a handler keep the name their
+ * thread had when they were logged.
+ *
+ * @author Oak Tree Designs Ltd
+ */
+public final class ThreadIdentity {
+
+	private final static Charset charset = Charset.defaultCharset();
+
+	private final static ThreadLocal<ThreadIdentity> identities = new ThreadLocal<ThreadIdentity>() {
+		@Override
+		protected ThreadIdentity initialValue() {
+			Thread t = Thread.currentThread();
+			return new ThreadIdentity(t.getId(), t.getName());
+		}
+	};
+
+	private final int id;
+	private final String name;
+	private final String idString;
+	private final char[] idChars;
+	private final char[] nameChars;
+	private final byte[] nameBytes;
+
+	private ThreadIdentity(long id, String name) {
+		this.id = (int)id;
+		this.name = name;
+		this.idString = String.valueOf(this.id);
+		this.idChars = idString.toCharArray();
+		this.nameChars = name.toCharArray();
+		this.nameBytes = name.getBytes(charset);
+	}
+
+	/**
+	 * @return identity of the calling thread, remade if the thread has been renamed.
+	 */
+	public static ThreadIdentity current() {
+		ThreadIdentity identity = identities.get();
+		String name = Thread.currentThread().getName();
+		if (name != identity.name && !name.equals(identity.name)) {
+			identity = new ThreadIdentity(identity.id, name);
+			identities.set(identity);
+		}
+		return identity;
+	}
+
+	public int getId() {
+		return id;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return the id in decimal.
+	 */
+	public String getIdString() {
+		return idString;
+	}
+
+	/**
+	 * @return the name encoded in the default charset, as the binary writers write strings. Do not change.
+	 */
+	public byte[] getNameBytes() {
+		return nameBytes;
+	}
+
+	/**
+	 * @return the name's chars. Do not change.
+	 */
+	public char[] getNameChars() {
+		return nameChars;
+	}
+
+	/**
+	 * Append the record's thread id, from its identity if it has one.
+	 * @param record
+	 * @param buffer
+	 */
+	public static void appendId(ILogRecord record, StringBuilder buffer) {
+		ThreadIdentity identity = record.getThreadIdentity();
+		if (identity != null) {
+			buffer.append(identity.idChars);
+		} else {
+			buffer.append(record.getThreadId());
+		}
+	}
+
+	/**
+	 * Append the record's thread name, from its identity if it has one.
+	 * @param record
+	 * @param buffer
+	 */
+	public static void appendName(ILogRecord record, StringBuilder buffer) {
+		ThreadIdentity identity = record.getThreadIdentity();
+		if (identity != null) {
+			buffer.append(identity.nameChars);
+		} else {
+			buffer.append(record.getThreadName());
+		}
+	}
+
+	@Override
+	public String toString() {
+		return idString + " " + name;
+	}
+}
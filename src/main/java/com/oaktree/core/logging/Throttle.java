@@ -0,0 +1,193 @@
+package com.oaktree.core.logging;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sampling and rate limiting of log records, for a logger (checked before a record is made) or a
+ * handler. Configured in the properties file e.g.
+ * <li>com.acme.feed.rateLimit=1000/s - at most 1000 records a second (units ms, s, m or h), with
+ * bursts of up to a second's worth</li>
+ * <li>com.acme.feed.sample=0.01 - 1 record in 100</li>
+ *
+ * The rate limit is a token bucket kept as the time the bucket will next be full (the generic cell
+ * rate algorithm), so a check is a nanoTime and a compare and set, with no thread or timer refilling
+ * it. Sampling is every nth record, by a counter.
+ *
+ * Suppressed records are counted; takeSummary hands back the count, and the time since the last
+ * summary, at most once per summary period so the owner can log how many were lost and over what time.
+ *
+ * @author Oak Tree Designs Ltd
+ */
+public class Throttle {
+
+	public final static long DEFAULT_SUMMARY_MILLIS = 10000;
+
+	/**
+	 * Keep 1 in this many records; 1 for all.
+	 */
+	private final long samplePeriod;
+	private final AtomicLong seen = new AtomicLong();
+	/**
+	 * Nanos between records at the limit; 0 for no limit.
+	 */
+	private final long emissionNanos;
+	/**
+	 * How far ahead of now the bucket's full time may be and still let a record through.
+	 */
+	private final long toleranceNanos;
+	private final AtomicLong fullAt = new AtomicLong(System.nanoTime());
+	private final String description;
+
+	private final AtomicLong suppressed = new AtomicLong();
+	private final AtomicLong unreported = new AtomicLong();
+	private final long summaryNanos;
+	private final AtomicLong lastSummary = new AtomicLong(System.nanoTime());
+
+	/**
+	 * @param perSecond records allowed a second; 0 for no limit.
+	 * @param sample fraction of records to keep, e.g. 0.01; 1 for all.
+	 * @param summaryMillis how often suppressed counts are handed back.
+	 */
+	public Throttle(double perSecond, double sample, long summaryMillis) {
+		if (perSecond < 0) {
+			throw new IllegalArgumentException("Invalid rate limit. Must be >= 0");
+		}
+		if (sample <= 0 || sample > 1) {
+			throw new IllegalArgumentException("Invalid sample. Must be > 0 and <= 1");
+		}
+		this.samplePeriod = Math.max(1, Math.round(1 / sample));
+		if (perSecond > 0) {
+			this.emissionNanos = Math.max(1, (long)(TimeUnit.SECONDS.toNanos(1) / perSecond));
+			long burst = Math.max(1, (long)perSecond);
+			this.toleranceNanos = (burst - 1) * emissionNanos;
+		} else {
+			this.emissionNanos = 0;
+			this.toleranceNanos = 0;
+		}
+		this.summaryNanos = TimeUnit.MILLISECONDS.toNanos(summaryMillis);
+		this.description = (perSecond > 0 ? "rateLimit: " + perSecond + "/s " : "") + (samplePeriod > 1 ? "sample: 1/" + samplePeriod : "");
+	}
+
+	/**
+	 * Make a throttle from the properties values.
+	 * @param rateLimit e.g. 1000/s, or null.
+	 * @param sample e.g. 0.01, or null.
+	 * @return throttle or null if neither is given.
+	 */
+	public static Throttle parse(String rateLimit, String sample) {
+		if (rateLimit == null && sample == null) {
+			return null;
+		}
+		double perSecond = 0;
+		if (rateLimit != null) {
+			String[] bits = rateLimit.trim().split("/");
+			perSecond = Double.parseDouble(bits[0].trim());
+			if (bits.length > 1) {
+				String unit = bits[1].trim();
+				if ("ms".equals(unit)) {
+					perSecond *= 1000;
+				} else if ("m".equals(unit) || "min".equals(unit)) {
+					perSecond /= 60;
+				} else if ("h".equals(unit)) {
+					perSecond /= 3600;
+				} else if (!"s".equals(unit) && !"sec".equals(unit)) {
+					throw new IllegalArgumentException("Invalid rate limit unit " + unit + " in " + rateLimit);
+				}
+			}
+		}
+		return new Throttle(perSecond, sample != null ? Double.parseDouble(sample.trim()) : 1, DEFAULT_SUMMARY_MILLIS);
+	}
+
+	/**
+	 * @return true if a record may go through now; otherwise it is counted as suppressed.
+	 */
+	public boolean allow() {
+		if (samplePeriod > 1 && seen.getAndIncrement() % samplePeriod != 0) {
+			return suppress();
+		}
+		if (emissionNanos == 0) {
+			return true;
+		}
+		long now = System.nanoTime();
+		for (;;) {
+			long full = fullAt.get();
+			long base = full - now > 0 ? full : now;
+			if (base - now > toleranceNanos) {
+				return suppress();
+			}
+			if (fullAt.compareAndSet(full, base + emissionNanos)) {
+				return true;
+			}
+		}
+	}
+
+	private boolean suppress() {
+		suppressed.incrementAndGet();
+		unreported.incrementAndGet();
+		return false;
+	}
+
+	/**
+	 * Records suppressed between two summaries and the time between them.
+	 */
+	public final static class Summary {
+		private final long suppressed;
+		private final long millis;
+		Summary(long suppressed, long millis) {
+			this.suppressed = suppressed;
+			this.millis = millis;
+		}
+		public long getSuppressed() {
+			return suppressed;
+		}
+		/**
+		 * @return millis since the last summary, or since the throttle was made.
+		 */
+		public long getMillis() {
+			return millis;
+		}
+	}
+
+	/**
+	 * @return records suppressed since the last summary if a summary is due, else null.
+	 */
+	public Summary takeSummary() {
+		if (unreported.get() == 0) {
+			return null;
+		}
+		long now = System.nanoTime();
+		long last = lastSummary.get();
+		if (now - last < summaryNanos || !lastSummary.compareAndSet(last, now)) {
+			return null;
+		}
+		return new Summary(unreported.getAndSet(0), TimeUnit.NANOSECONDS.toMillis(now - last));
+	}
+
+	/**
+	 * @return records suppressed and not yet summarised, clearing the count, or null if none; for
+	 * reporting on stop.
+	 */
+	public Summary takeUnreported() {
+		long now = System.nanoTime();
+		long last = lastSummary.getAndSet(now);
+		long count = unreported.getAndSet(0);
+		return count > 0 ? new Summary(count, TimeUnit.NANOSECONDS.toMillis(now - last)) : null;
+	}
+
+	/**
+	 * @return all records suppressed.
+	 */
+	public long getSuppressed() {
+		return suppressed.get();
+	}
+
+	public long getSummaryMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(summaryNanos);
+	}
+
+	@Override
+	public String toString() {
+		return description + " suppressed: " + suppressed.get();
+	}
+}
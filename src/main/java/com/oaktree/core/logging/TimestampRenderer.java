@@ -0,0 +1,113 @@
+package com.oaktree.core.logging;
+
+import java.util.Calendar;
+
+/**
+ * Renders times as HH:mm:ss.SSS without allocating per record. The day a time falls in and the
+ * HH:mm:ss. prefix of its second are cached, so only the millisecond digits are worked out for each
+ * record; the prefix is remade once a second and the day once a day, at midnight or whenever a time
+ * from another day turns up (e.g. reading an old binary log).
+ *
+ * The cache is an immutable object swapped in whole, so the renderer is shared by all formatters and
+ * threads without locking; threads logging in the same second all use the same prefix.
+ *
+ * @author Oak Tree Designs Ltd
+ */
+public final class TimestampRenderer {
+
+	/**
+	 * The day and the second last rendered.
+	 */
+	private final static class Second {
+		final long dayStart;
+		final long dayEnd;
+		final long second;
+		final char[] prefix;
+
+		Second(long dayStart, long dayEnd, long second) {
+			this.dayStart = dayStart;
+			this.dayEnd = dayEnd;
+			this.second = second;
+			long t = second * 1000 - dayStart;
+			long hours = t / 3600000;
+			long mins = (t / 60000) % 60;
+			long secs = (t / 1000) % 60;
+			prefix = new char[] {
+				digit(hours / 10), digit(hours % 10), ':',
+				digit(mins / 10), digit(mins % 10), ':',
+				digit(secs / 10), digit(secs % 10), '.'
+			};
+		}
+	}
+
+	private static volatile Second cached = forTime(System.currentTimeMillis());
+
+	private TimestampRenderer() {}
+
+	private static char digit(long n) {
+		return (char)('0' + n);
+	}
+
+	/**
+	 * @param millis
+	 * @return cache entry for the second holding millis, made with a new day if millis is on another day.
+	 */
+	private static Second forTime(long millis) {
+		Calendar cal = Calendar.getInstance();
+		cal.setTimeInMillis(millis);
+		cal.set(Calendar.HOUR_OF_DAY, 0);
+		cal.set(Calendar.MINUTE, 0);
+		cal.set(Calendar.SECOND, 0);
+		cal.set(Calendar.MILLISECOND, 0);
+		long dayStart = cal.getTimeInMillis();
+		cal.add(Calendar.DATE, 1);
+		return new Second(dayStart, cal.getTimeInMillis(), millis / 1000);
+	}
+
+	private static Second getSecond(long millis) {
+		Second s = cached;
+		long second = millis / 1000;
+		if (second == s.second) {
+			return s;
+		}
+		if (millis >= s.dayStart && millis < s.dayEnd) {
+			s = new Second(s.dayStart, s.dayEnd, second);
+		} else {
+			s = forTime(millis);
+		}
+		cached = s;
+		return s;
+	}
+
+	/**
+	 * Append the time of day as HH:mm:ss.SSS.
+	 * @param millis since the epoch.
+	 * @param buffer
+	 */
+	public static void append(long millis, StringBuilder buffer) {
+		Second s = getSecond(millis);
+		int ms = (int)(millis - s.second * 1000);
+		buffer.append(s.prefix);
+		buffer.append(digit(ms / 100));
+		buffer.append(digit((ms / 10) % 10));
+		buffer.append(digit(ms % 10));
+	}
+
+	/**
+	 * @param millis since the epoch.
+	 * @return time of day as HH:mm:ss.SSS.
+	 */
+	public static String render(long millis) {
+		StringBuilder buffer = new StringBuilder(12);
+		append(millis, buffer);
+		return buffer.toString();
+	}
+
+	/**
+	 * @param millis since the epoch.
+	 * @return millis since the midnight starting the day millis falls in.
+	 */
+	public static long sinceMidnight(long millis) {
+		return millis - getSecond(millis).dayStart;
+	}
+}
@@ -4,6 +4,8 @@ package com.oaktree.core.logging.binlog;
 import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 
+import com.oaktree.core.logging.formatters.Utf8;
+
 /**
  * Common utilities for operations on bytes.
  * 
@@ -654,14 +656,56 @@ public class ByteUtils {
 		if (string == null) {
 			buffer.putShort((short) 0);
 		} else {
+			putBytes(string.getBytes(charset), string.length(), buffer, size);
+		}
+	}
+
+	/**
+	 * Write a string already encoded in the default charset up to a limit, laid out as putString does.
+	 * @param bytes
+	 * @param buffer
+	 * @param size
+	 */
+	public static void putStringBytes(byte[] bytes, ByteBuffer buffer, int size) {
+		putBytes(bytes, bytes.length, buffer, size);
+	}
+
+	/**
+	 * Write chars up to a limit, laid out as putString does; when the default charset is UTF-8
+	 * they are encoded straight into the buffer without making a String.
+	 * @param chars
+	 * @param buffer
+	 * @param size
+	 */
+	public static void putChars(CharSequence chars, ByteBuffer buffer, int size) {
+		if (chars == null) {
+			buffer.putShort((short) 0);
+			return;
+		}
+		if (UTF8.equals(charset)) {
 			int p = buffer.position();
-			byte[] bites = string.getBytes(charset);
-			int len = string.length();
+			int limit = buffer.limit();
 			buffer.putShort((short) size);
-			int min = len < size ? len : size;
-			buffer.put(bites,0,min);
-			buffer.position(p+size+2);
-		}
+			buffer.limit(Math.min(limit, p + size + 2));
+			boolean fitted = Utf8.encode(chars, buffer);
+			buffer.limit(limit);
+			if (fitted) {
+				buffer.position(p + size + 2);
+				return;
+			}
+			buffer.position(p);
+		}
+		putString(chars.toString(), buffer, size);
+	}
+
+	private final static Charset UTF8 = Charset.forName("UTF-8");
+
+	private static void putBytes(byte[] bites, int len, ByteBuffer buffer, int size) {
+		int p = buffer.position();
+		buffer.putShort((short) size);
+		int min = len < size ? len : size;
+		buffer.put(bites,0,min);
+		buffer.position(p+size+2);
 	}
 	
 	
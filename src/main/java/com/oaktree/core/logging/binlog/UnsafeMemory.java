@@ -357,6 +357,27 @@ public class UnsafeMemory {
 		putCharArray(chars,size);
 	}
 
+	/**
+	 * Write chars laid out as putString(value, size) does, padding with zeros, without copying
+	 * them to an array first.
+	 * @param value
+	 * @param size
+	 */
+	public void putChars(final CharSequence value, int size) {
+		if (value == null) {
+			putInt(NULL_ARRAY);
+			return;
+		}
+		putInt(size);
+		int n = Math.min(value.length(), size);
+		for (int i = 0; i < n; i++) {
+			putChar(value.charAt(i));
+		}
+		for (int i = n; i < size; i++) {
+			putChar((char)0);
+		}
+	}
+
 
 	public void putFloatArray(final float[] values) {
 		if (values == null) {
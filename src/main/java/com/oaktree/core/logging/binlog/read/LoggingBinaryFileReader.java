@@ -14,6 +14,7 @@ import org.slf4j.LoggerFactory;
 
 import com.oaktree.core.logging.Level;
 import com.oaktree.core.logging.Text;
+import com.oaktree.core.logging.TimestampRenderer;
 import com.oaktree.core.logging.binlog.ByteUtils;
 
 /**
@@ -122,7 +123,7 @@ public class LoggingBinaryFileReader implements IBinaryLogReader {
 	            short level = (Short)ByteUtils.getObject(buffer, ByteUtils.Types.SHORT);
 	            String tname = (String)ByteUtils.getObject(buffer, ByteUtils.Types.STRING_20);
 	            String msg = (String)ByteUtils.getObject(buffer, ByteUtils.Types.STRING_128);
-	            l.append(Text.toTime(time-Text.getToday()));
+	            TimestampRenderer.append(time, l);
 	            l.append(Text.SPACE);
 	            l.append(tid);
 	            l.append(Text.SPACE);
@@ -131,6 +132,13 @@ public class LoggingBinaryFileReader implements IBinaryLogReader {
 	            l.append(Level.fromInt(level));
 	            l.append(Text.SPACE);
 	            l.append(msg);
+	            if (schema.length > 5) {
+	            	String mdc = (String)ByteUtils.getObject(buffer, ByteUtils.Types.STRING_128);
+	            	if (mdc != null && (mdc = mdc.trim()).length() > 0) {
+	            		l.append(Text.SPACE);
+	            		l.append(mdc);
+	            	}
+	            }
 	            System.out.println(l.toString());
 	        }   else {
 	            log.warn("Cannot retreive record " + record);
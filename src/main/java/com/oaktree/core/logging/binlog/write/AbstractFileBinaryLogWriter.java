@@ -14,7 +14,7 @@ import com.oaktree.core.logging.binlog.ByteUtils;
 import com.oaktree.core.logging.binlog.UnsafeMemory;
 import com.oaktree.core.logging.pool.IObjectFactory;
 import com.oaktree.core.logging.pool.IPool;
-import com.oaktree.core.logging.pool.SimplePool;
+import com.oaktree.core.logging.pool.StackPool;
 
 /**
  * Mechanics
@@ -62,7 +62,7 @@ public class AbstractFileBinaryLogWriter extends AbstractBinaryLogWriter {
     	}
 		
         if (useByteBuffer) {
-        	bufferManager = new SimplePool<ByteBufferWrapper>(poolSize ,
+        	StackPool<ByteBufferWrapper> buffers = new StackPool<ByteBufferWrapper>(poolSize ,
 					new IObjectFactory<ByteBufferWrapper>() {
 
 						@Override
@@ -74,9 +74,11 @@ public class AbstractFileBinaryLogWriter extends AbstractBinaryLogWriter {
 	        	        	}
 						}
 					}); 
+        	buffers.enableStatistics("BinLog." + name + ".buffers").register();
+        	bufferManager = buffers;
 			
         } else {
-        	pool = new SimplePool<UnsafeMemory>(poolSize,
+        	StackPool<UnsafeMemory> memory = new StackPool<UnsafeMemory>(poolSize,
 					new IObjectFactory<UnsafeMemory>() {
 
 						@Override
@@ -84,8 +86,9 @@ public class AbstractFileBinaryLogWriter extends AbstractBinaryLogWriter {
 							byte[] buffer = new byte[bufferSize];
 							return new UnsafeMemory(buffer);
 						}
-					}) {
-			};
+					});
+        	memory.enableStatistics("BinLog." + name + ".memory").register();
+        	pool = memory;
         }
     }
     MappedByteBuffer mbb;
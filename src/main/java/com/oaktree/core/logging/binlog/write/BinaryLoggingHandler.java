@@ -30,6 +30,14 @@ public class BinaryLoggingHandler implements ILoggingHandler {
 	public void setUseByteBuffer(String ubb) {
 		this.useByteBuffer = Boolean.valueOf(ubb);
 	}
+	private boolean mdc = false;
+	/**
+	 * Also write each record's MDC, as key=value,key=value.
+	 * @param mdc
+	 */
+	public void setMdc(String mdc) {
+		this.mdc = Boolean.valueOf(mdc);
+	}
 	private String filename = "binlog.out";
 	public void setFilename(String filename) {
 		this.filename = filename;
@@ -45,7 +53,11 @@ public class BinaryLoggingHandler implements ILoggingHandler {
 	
 	@Override
 	public void publish(ILogRecord record) {
-		if (record == null || this.level > record.getLevel().intValue()) {
+		if (record == null) {
+			return;
+		}
+		if (this.level > record.getLevel().intValue()) {
+			record.onProcessed(this);
 			return;
 		}
 		//lrfb.log(record.getMillis(), (short)record.getLevel().intValue(), (short)record.getThreadId(), record.getThreadName(), record.getMessage());
@@ -64,6 +76,11 @@ public class BinaryLoggingHandler implements ILoggingHandler {
 		this.level = l.intValue();
 	}
 
+	@Override
+	public boolean isEnabled(Level l) {
+		return this.level <= l.intValue();
+	}
+
 	@Override
 	public void publish(List<ILogRecord> batch) {
 		//TODO probably inefficient. we should be able to flush once per batch.
@@ -80,7 +97,7 @@ public class BinaryLoggingHandler implements ILoggingHandler {
 //		if (background) {
 //			lrfb = new BackgroundFileBinaryLogWriter(useByteBuffer, nm, filename, maxQueueSize);			
 //		} else {
-			lrfb = new LogRecordFileBinaryLogWriter(useByteBuffer, nm, filename);			
+			lrfb = new LogRecordFileBinaryLogWriter(useByteBuffer, nm, filename, mdc);			
 //		}
 		lrfb.setUseByteBuffer(useByteBuffer);
 		lrfb.start();
@@ -103,7 +120,7 @@ public class BinaryLoggingHandler implements ILoggingHandler {
 	
 	@Override
 	public String toString() {
-		return name + " filename: " + filename + " queueSize: "+maxQueueSize + " useByteBuffer: "+useByteBuffer;
+		return name + " filename: " + filename + " queueSize: "+maxQueueSize + " useByteBuffer: "+useByteBuffer + " mdc: " + mdc;
 	}
 
 }
@@ -9,8 +9,11 @@ import java.util.List;
 import com.oaktree.core.logging.ILogRecord;
 import com.oaktree.core.logging.Level;
 import com.oaktree.core.logging.Text;
+import com.oaktree.core.logging.ThreadIdentity;
 import com.oaktree.core.logging.binlog.ByteUtils;
 import com.oaktree.core.logging.formatters.IFormatter;
+import com.oaktree.core.logging.formatters.StackTraceCache;
+import com.oaktree.core.logging.formatters.ThrowableRenderer;
 import com.oaktree.core.logging.handlers.ILoggingHandler;
 
 /**
@@ -41,6 +44,33 @@ public class DirectFileHandler implements ILoggingHandler {
 	private File f;
 	private FileOutputStream fos;
 	private FileChannel fc;
+	private final static int MAX_KEPT_MESSAGE = 64 * 1024;
+	/**
+	 * Ends a message cut short to fit the buffer, e.g. one with a deep stack trace.
+	 */
+	private final static String TRUNCATED = "...[truncated]";
+	/**
+	 * Stack traces already written; null to write every one in full.
+	 */
+	private StackTraceCache stackTraces;
+	/**
+	 * Write each distinct stack trace once, then refer to it by id, remembering up to this many.
+	 * @param size entries, 0 to write every trace in full.
+	 */
+	public void setStackTraceCache(String size) {
+		int n = Integer.valueOf(size.trim());
+		this.stackTraces = n > 0 ? new StackTraceCache(n) : null;
+	}
+	/**
+	 * Per thread buffer the message is rendered into, so records whose message was built in place
+	 * are written without making a String.
+	 */
+	private final ThreadLocal<StringBuilder> messages = new ThreadLocal<StringBuilder>() {
+		@Override
+		protected StringBuilder initialValue() {
+			return new StringBuilder(256);
+		}
+	};
 
 	public void start() {
 		if (direct) {
@@ -65,17 +95,20 @@ public class DirectFileHandler implements ILoggingHandler {
 	}
 	@Override
 	public void publish(ILogRecord record) {
+		if (record == null) {
+			return;
+		}
 		try {
-			if (record == null || this.level.intValue() > record.getLevel().intValue()) {
-				return;
+			if (this.level.intValue() <= record.getLevel().intValue()) {
+				buffer.clear();
+				recordToByteBuffer(record);
+				buffer.flip();
+				fc.write(buffer);
 			}
-			buffer.clear();
-			recordToByteBuffer(record);
-			buffer.flip();
-			fc.write(buffer);			
-			record.onProcessed(this);
 		} catch (Throwable t) {
 			t.printStackTrace();
+		} finally {
+			record.onProcessed(this);
 		}
 	}
 
@@ -85,13 +118,35 @@ public class DirectFileHandler implements ILoggingHandler {
 //        buffer.putShort((short)record.getLevel().intValue());
 		ByteUtils.putString(String.valueOf(record.getMillis()), buffer);
 		buffer.putChar(' ');
-		ByteUtils.putString(String.valueOf(record.getThreadId()), buffer);
+		ThreadIdentity identity = record.getThreadIdentity();
+		ByteUtils.putString(identity != null ? identity.getIdString() : String.valueOf(record.getThreadId()), buffer);
 		buffer.putChar(' ');
 		ByteUtils.putString(record.getLevel().name(), buffer);
 		buffer.putChar(' ');
-        ByteUtils.putString(record.getThreadName(), buffer);
+        if (identity != null) {
+        	ByteUtils.putStringBytes(identity.getNameBytes(), buffer, identity.getNameBytes().length);
+        } else {
+        	ByteUtils.putString(record.getThreadName(), buffer);
+        }
         buffer.putChar(' ');
-        ByteUtils.putString(record.getMessage(), buffer);
+        StringBuilder message = messages.get();
+        message.setLength(0);
+        record.appendMessage(message);
+        if (record.getThrowable() != null) {
+        	message.append(Text.NEW_LINE);
+        	ThrowableRenderer.append(record.getThrowable(), stackTraces, message);
+        	message.setLength(message.length() - 1); //the record's own new line follows.
+        }
+        //the field takes its length in chars plus 2, and the new line 2 more.
+        int room = Math.max(0, Math.min(buffer.remaining() - 4, Short.MAX_VALUE));
+        if (message.length() > room) {
+        	message.setLength(Math.max(0, room - TRUNCATED.length()));
+        	message.append(TRUNCATED, 0, Math.min(TRUNCATED.length(), room));
+        }
+        ByteUtils.putChars(message, buffer, message.length());
+        if (message.capacity() > MAX_KEPT_MESSAGE) {
+        	messages.remove();
+        }
         buffer.putChar(Text.NEW_LINE);
 		return buffer;
 	}
@@ -104,6 +159,10 @@ public class DirectFileHandler implements ILoggingHandler {
 		this.level = l;
 	}
 	@Override
+	public boolean isEnabled(Level l) {
+		return this.level.intValue() <= l.intValue();
+	}
+	@Override
 	public void publish(List<ILogRecord> batch) {
 		buffer.clear();
 	}
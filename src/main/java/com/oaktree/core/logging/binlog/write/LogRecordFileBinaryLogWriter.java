@@ -3,7 +3,9 @@ package com.oaktree.core.logging.binlog.write;
 import java.nio.ByteBuffer;
 
 import com.oaktree.core.logging.ILogRecord;
+import com.oaktree.core.logging.ThreadIdentity;
 import com.oaktree.core.logging.binlog.*;
+import com.oaktree.core.logging.formatters.ThrowableRenderer;
 /**
  * Write collections of random sized records to file.
  * each record is written with its own header relating to:
@@ -21,9 +23,41 @@ public class LogRecordFileBinaryLogWriter extends AbstractFileBinaryLogWriter im
 
 	//timestamp,threadid,level,threadname,message
 	final static byte[] schema = new byte[]{ByteUtils.Types.LONG,ByteUtils.Types.SHORT,ByteUtils.Types.SHORT,ByteUtils.Types.STRING_20,ByteUtils.Types.STRING_128}; 
+	//timestamp,threadid,level,threadname,message,mdc as key=value,key=value
+	final static byte[] mdcSchema = new byte[]{ByteUtils.Types.LONG,ByteUtils.Types.SHORT,ByteUtils.Types.SHORT,ByteUtils.Types.STRING_20,ByteUtils.Types.STRING_128,ByteUtils.Types.STRING_128};
+	final static int MDC_SIZE = 128;
+	final static int MESSAGE_SIZE = 128;
+
+	private final boolean mdc;
+	/**
+	 * Per thread buffer the message of a record is rendered into, so no String need be made.
+	 */
+	private final ThreadLocal<StringBuilder> messageBuffers = new ThreadLocal<StringBuilder>() {
+		@Override
+		protected StringBuilder initialValue() {
+			return new StringBuilder(MESSAGE_SIZE);
+		}
+	};
+	/**
+	 * Per thread buffer the MDC of a record is rendered into.
+	 */
+	private final ThreadLocal<StringBuilder> mdcBuffers = new ThreadLocal<StringBuilder>() {
+		@Override
+		protected StringBuilder initialValue() {
+			return new StringBuilder(MDC_SIZE);
+		}
+	};
    
 	public LogRecordFileBinaryLogWriter(boolean useByteBuffer,String name, String fileName) {
-		super(useByteBuffer,schema,name, fileName);
+		this(useByteBuffer, name, fileName, false);
+    }
+
+	/**
+	 * @param mdc also write the MDC of each record, as a further field, ascii only.
+	 */
+	public LogRecordFileBinaryLogWriter(boolean useByteBuffer,String name, String fileName, boolean mdc) {
+		super(useByteBuffer,mdc ? mdcSchema : schema,name, fileName);
+		this.mdc = mdc;
     }
 
 
@@ -35,6 +69,21 @@ public class LogRecordFileBinaryLogWriter extends AbstractFileBinaryLogWriter im
      * @param c
      */
     public void log(long time, short level, short threadid, String tname, String msg) {
+    	log(time, level, threadid, tname, null, msg, null);
+    }
+
+    /**
+     * log a log record, taking the thread name from its identity if given, already encoded.
+     */
+    private void log(long time, short level, short threadid, String tname, ThreadIdentity identity, CharSequence msg, ILogRecord record) {
+    	StringBuilder context = null;
+    	if (mdc) {
+    		context = mdcBuffers.get();
+    		context.setLength(0);
+    		if (record != null) {
+    			record.appendMdc(context);
+    		}
+    	}
     	if (useByteBuffer) {
     		ByteBufferWrapper bbw = bufferManager.get();
     		ByteBuffer buffer = bbw.getByteBuffer();
@@ -44,8 +93,21 @@ public class LogRecordFileBinaryLogWriter extends AbstractFileBinaryLogWriter im
 		        buffer.putLong(time);
 		        buffer.putShort(threadid);
 		        buffer.putShort(level);
-		        ByteUtils.putString(tname, buffer, 20);
-		        ByteUtils.putString(msg, buffer, 128);	    	
+		        if (identity != null) {
+		        	ByteUtils.putStringBytes(identity.getNameBytes(), buffer, 20);
+		        } else {
+		        	ByteUtils.putString(tname, buffer, 20);
+		        }
+		        ByteUtils.putChars(msg, buffer, MESSAGE_SIZE);
+		        if (context != null) {
+		        	int p = buffer.position();
+		        	buffer.putShort((short)MDC_SIZE);
+		        	int n = Math.min(context.length(), MDC_SIZE);
+		        	for (int i = 0; i < n; i++) {
+		        		buffer.put(ascii(context.charAt(i)));
+		        	}
+		        	buffer.position(p + MDC_SIZE + 2);
+		        }
 		        writeBytes(buffer);
 		        bufferManager.free(bbw);
     		} catch (Exception e) {
@@ -57,8 +119,16 @@ public class LogRecordFileBinaryLogWriter extends AbstractFileBinaryLogWriter im
     		um.putLong(time);
 	        um.putShort(threadid);
 	        um.putShort(level);
-	        um.putString(tname,20);
-	        um.putString(msg,128);
+	        //padded to 20 chars, never reading past the end of a shorter name.
+	        um.putChars(identity != null ? identity.getName() : tname, 20);
+	        um.putChars(msg, MESSAGE_SIZE);
+	        if (context != null) {
+	        	um.putShort((short)MDC_SIZE);
+	        	int n = Math.min(context.length(), MDC_SIZE);
+	        	for (int i = 0; i < MDC_SIZE; i++) {
+	        		um.putByte(i < n ? ascii(context.charAt(i)) : 0);
+	        	}
+	        }
 			writeBytes(um.getBytes());
 			pool.free(um);
     	}
@@ -66,7 +136,23 @@ public class LogRecordFileBinaryLogWriter extends AbstractFileBinaryLogWriter im
 
 
 	public void log(ILogRecord record) {
-		log(record.getMillis(), (short)record.getLevel().intValue(), (short)record.getThreadId(), record.getThreadName(), record.getMessage());		
+		StringBuilder msg = messageBuffers.get();
+		msg.setLength(0);
+		record.appendMessage(msg);
+		if (record.getThrowable() != null) {
+			//only the throwable itself fits; a message is 128 chars.
+			msg.append(' ');
+			ThrowableRenderer.appendHeader(record.getThrowable(), msg);
+			msg.setLength(msg.length() - 1);
+		}
+		log(record.getMillis(), (short)record.getLevel().intValue(), (short)record.getThreadId(), record.getThreadName(), record.getThreadIdentity(), msg, record);
+		if (msg.capacity() > 64 * 1024) {
+			messageBuffers.remove();
+		}
+	}
+
+	private static byte ascii(char c) {
+		return c < 0x80 ? (byte)c : (byte)'?';
 	}
 
 
@@ -0,0 +1,75 @@
+package com.oaktree.core.logging.clock;
+
+/**
+ * The wall clock read by a background ticker thread every tick and cached, so reading it is a
+ * volatile read rather than a call into the OS. Times are up to a tick old; several records in the
+ * same tick get the same time.
+ *
+ * @author Oak Tree Designs Ltd
+ */
+public class CoarseClock implements IClock {
+
+	public final static long DEFAULT_TICK_MILLIS = 1;
+
+	private final long tickMillis;
+	private volatile long millis = System.currentTimeMillis();
+	private volatile Thread ticker;
+
+	public CoarseClock() {
+		this(DEFAULT_TICK_MILLIS);
+	}
+
+	public CoarseClock(long tickMillis) {
+		if (tickMillis <= 0) {
+			throw new IllegalArgumentException("Invalid tick. Must be positive");
+		}
+		this.tickMillis = tickMillis;
+	}
+
+	@Override
+	public long getMillis() {
+		return millis;
+	}
+
+	@Override
+	public long getNanos() {
+		return millis * NANOS_PER_MILLI;
+	}
+
+	@Override
+	public synchronized void start() {
+		if (ticker != null) {
+			return;
+		}
+		millis = System.currentTimeMillis();
+		ticker = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				while (ticker == Thread.currentThread()) {
+					millis = System.currentTimeMillis();
+					try {
+						Thread.sleep(tickMillis);
+					} catch (InterruptedException e) {
+						//stopping, or woken early; either way check and tick again.
+					}
+				}
+			}
+		}, "LogClockTicker");
+		ticker.setDaemon(true);
+		ticker.start();
+	}
+
+	@Override
+	public synchronized void stop() {
+		Thread t = ticker;
+		ticker = null;
+		if (t != null) {
+			t.interrupt();
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "CoarseClock tick: " + tickMillis + "ms";
+	}
+}
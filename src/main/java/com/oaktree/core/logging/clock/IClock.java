@@ -0,0 +1,26 @@
+package com.oaktree.core.logging.clock;
+
+/**
+ * Source of the time stamped on log records; chosen in the properties file with clock=SYSTEM
+ * (default), COARSE, NANO, MANUAL or the class name of an IClock with a no-arg constructor.
+ *
+ * @author Oak Tree Designs Ltd
+ */
+public interface IClock {
+
+	long NANOS_PER_MILLI = 1000000L;
+
+	/**
+	 * @return millis since the epoch.
+	 */
+	long getMillis();
+
+	/**
+	 * @return nanos since the epoch, to whatever precision the clock has.
+	 */
+	long getNanos();
+
+	void start();
+
+	void stop();
+}
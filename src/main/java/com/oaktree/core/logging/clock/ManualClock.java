@@ -0,0 +1,56 @@
+package com.oaktree.core.logging.clock;
+
+/**
+ * A clock that only moves when told to, for tests that need known times on their records.
+ *
+ * @author Oak Tree Designs Ltd
+ */
+public class ManualClock implements IClock {
+
+	private volatile long nanos;
+
+	public ManualClock() {
+		this(0);
+	}
+
+	public ManualClock(long millis) {
+		setMillis(millis);
+	}
+
+	public void setMillis(long millis) {
+		this.nanos = millis * NANOS_PER_MILLI;
+	}
+
+	public void setNanos(long nanos) {
+		this.nanos = nanos;
+	}
+
+	/**
+	 * Move the clock on.
+	 * @param nanos
+	 */
+	public synchronized void advance(long nanos) {
+		this.nanos += nanos;
+	}
+
+	@Override
+	public long getMillis() {
+		return nanos / NANOS_PER_MILLI;
+	}
+
+	@Override
+	public long getNanos() {
+		return nanos;
+	}
+
+	@Override
+	public void start() {}
+
+	@Override
+	public void stop() {}
+
+	@Override
+	public String toString() {
+		return "ManualClock at " + nanos + "ns";
+	}
+}
@@ -0,0 +1,67 @@
+package com.oaktree.core.logging.clock;
+
+/**
+ * A nanosecond precision clock: System.nanoTime offset to wall time. The offset is taken from the
+ * wall clock when made and checked again every second so the clock follows the wall clock if it is
+ * stepped or drifts, without ever going backwards.
+ *
+ * @author Oak Tree Designs Ltd
+ */
+public class NanoClock implements IClock {
+
+	private final static long RESYNC_NANOS = 1000 * NANOS_PER_MILLI;
+
+	/**
+	 * Wall time in nanos at anchorTicks, and the nanoTime then; swapped in together.
+	 */
+	private static final class Anchor {
+		final long wallNanos;
+		final long ticks;
+		Anchor(long wallNanos, long ticks) {
+			this.wallNanos = wallNanos;
+			this.ticks = ticks;
+		}
+	}
+
+	private volatile Anchor anchor = new Anchor(System.currentTimeMillis() * NANOS_PER_MILLI, System.nanoTime());
+
+	@Override
+	public long getMillis() {
+		return getNanos() / NANOS_PER_MILLI;
+	}
+
+	@Override
+	public long getNanos() {
+		long ticks = System.nanoTime();
+		Anchor a = anchor;
+		long nanos = a.wallNanos + (ticks - a.ticks);
+		if (ticks - a.ticks > RESYNC_NANOS) {
+			resync(nanos, ticks);
+		}
+		return nanos;
+	}
+
+	/**
+	 * Move the anchor to the wall clock, if it has moved more than a milli from us, but never back
+	 * before the time we have already given out.
+	 */
+	private void resync(long nanos, long ticks) {
+		long wall = System.currentTimeMillis() * NANOS_PER_MILLI;
+		if (Math.abs(wall - nanos) > NANOS_PER_MILLI) {
+			anchor = new Anchor(Math.max(wall, nanos), ticks);
+		} else {
+			anchor = new Anchor(nanos, ticks);
+		}
+	}
+
+	@Override
+	public void start() {}
+
+	@Override
+	public void stop() {}
+
+	@Override
+	public String toString() {
+		return "NanoClock";
+	}
+}
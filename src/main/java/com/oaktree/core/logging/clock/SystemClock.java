@@ -0,0 +1,30 @@
+package com.oaktree.core.logging.clock;
+
+/**
+ * The wall clock, System.currentTimeMillis, read for every record; millisecond precision.
+ *
+ * @author Oak Tree Designs Ltd
+ */
+public class SystemClock implements IClock {
+
+	@Override
+	public long getMillis() {
+		return System.currentTimeMillis();
+	}
+
+	@Override
+	public long getNanos() {
+		return System.currentTimeMillis() * NANOS_PER_MILLI;
+	}
+
+	@Override
+	public void start() {}
+
+	@Override
+	public void stop() {}
+
+	@Override
+	public String toString() {
+		return "SystemClock";
+	}
+}
@@ -0,0 +1,69 @@
+package com.oaktree.core.logging.formatters;
+
+import com.oaktree.core.logging.ILogRecord;
+
+/**
+ * Base for formatters that append a record to a StringBuilder; gives the string form on top of
+ * that, formatting into a buffer kept per thread.
+ *
+ * @author Oak Tree Designs Ltd
+ */
+public abstract class AbstractFormatter implements IFormatter {
+
+	/**
+	 * Buffers larger than this are not kept for reuse.
+	 */
+	private final static int MAX_KEPT_BUFFER = 64 * 1024;
+
+	private final ThreadLocal<StringBuilder> buffers = new ThreadLocal<StringBuilder>() {
+		@Override
+		protected StringBuilder initialValue() {
+			return new StringBuilder(240);
+		}
+	};
+
+	@Override
+	public String format(ILogRecord record) {
+		StringBuilder buffer = buffers.get();
+		buffer.setLength(0);
+		format(record, buffer);
+		String s = buffer.toString();
+		release(buffer);
+		return s;
+	}
+
+	@Override
+	public void format(ILogRecord record, StringBuilder buffer) {
+		format(record, buffer, null);
+	}
+
+	/**
+	 * Append the formatted record, writing the stack trace of its throwable only if it is not
+	 * already in the cache. The cache belongs to the handler, as it is of what is in its file, so one
+	 * formatter may serve several handlers.
+	 * @param record
+	 * @param buffer
+	 * @param stackTraces stack traces already written, or null to write every one in full.
+	 */
+	public abstract void format(ILogRecord record, StringBuilder buffer, StackTraceCache stackTraces);
+
+	/**
+	 * Render the record's throwable, if it has one, with its stack trace or a reference to where
+	 * that was written.
+	 * @param record
+	 * @param stackTraces
+	 * @param buffer
+	 */
+	protected void appendThrowable(ILogRecord record, StackTraceCache stackTraces, StringBuilder buffer) {
+		Throwable t = record.getThrowable();
+		if (t != null) {
+			ThrowableRenderer.append(t, stackTraces, buffer);
+		}
+	}
+
+	private void release(StringBuilder buffer) {
+		if (buffer.capacity() > MAX_KEPT_BUFFER) {
+			buffers.remove();
+		}
+	}
+}
@@ -3,6 +3,8 @@ package com.oaktree.core.logging.formatters;
 import com.oaktree.core.logging.ILogRecord;
 import com.oaktree.core.logging.Level;
 import com.oaktree.core.logging.Text;
+import com.oaktree.core.logging.ThreadIdentity;
+import com.oaktree.core.logging.TimestampRenderer;
 
 
 /**
@@ -14,18 +16,15 @@ import com.oaktree.core.logging.Text;
  * @author Oak Tree Designs Ltd
  */
 
-public class ConsoleFormatter implements IFormatter{
+public class ConsoleFormatter extends AbstractFormatter {
 
 
-		
-	private long today;
 
 	/**
 	 * Create a new formatter.
 	 */
 	public ConsoleFormatter() {
 		super();
-		this.today = Text.getToday();
 	}
 
 
@@ -35,21 +34,18 @@ public class ConsoleFormatter implements IFormatter{
 	}
 
 	@Override
-	public String format(ILogRecord record) {
-		
-		StringBuilder buffer = new StringBuilder(240);
+	public void format(ILogRecord record, StringBuilder buffer, StackTraceCache stackTraces) {
 		/*
-		 * Format the time using the reusable date object.
+		 * Format the time using the cached second.
 		 */
-		long millis = record.getMillis() - this.today;
-		buffer.append(Text.toTime(millis));
+		TimestampRenderer.append(record.getMillis(), buffer);
 		buffer.append(Text.SPACE);
 		/*
 		 * The thread.
 		 */
-		buffer.append(record.getThreadId());
+		ThreadIdentity.appendId(record, buffer);
 		buffer.append(Text.SPACE);
-		buffer.append(record.getThreadName());
+		ThreadIdentity.appendName(record, buffer);
 		buffer.append(Text.SPACE);
 		/*
 		 * The level. non localized to save on resource bundle looking.
@@ -58,9 +54,9 @@ public class ConsoleFormatter implements IFormatter{
 		buffer.append(level.name());
 		buffer.append(Text.SPACE);
 
-		buffer.append(record.getMessage());
+		record.appendMessage(buffer);
 		buffer.append(Text.NEW_LINE);
-		return buffer.toString();
+		appendThrowable(record, stackTraces, buffer);
 	}
 
 	@Override
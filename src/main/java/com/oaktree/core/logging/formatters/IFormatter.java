@@ -4,4 +4,10 @@ import com.oaktree.core.logging.ILogRecord;
 
 public interface IFormatter {
 	String format(ILogRecord record);
+	/**
+	 * Append the formatted record to the buffer rather than making a string of it.
+	 * @param record
+	 * @param buffer
+	 */
+	void format(ILogRecord record, StringBuilder buffer);
 }
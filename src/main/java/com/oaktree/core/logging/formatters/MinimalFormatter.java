@@ -3,6 +3,8 @@ package com.oaktree.core.logging.formatters;
 import com.oaktree.core.logging.ILogRecord;
 import com.oaktree.core.logging.Level;
 import com.oaktree.core.logging.Text;
+import com.oaktree.core.logging.ThreadIdentity;
+import com.oaktree.core.logging.TimestampRenderer;
 
 
 /**
@@ -14,18 +16,15 @@ import com.oaktree.core.logging.Text;
  * @author Oak Tree Designs Ltd
  */
 
-public class MinimalFormatter implements IFormatter{
+public class MinimalFormatter extends AbstractFormatter {
 
 
-		
-	private long today;
 
 	/**
 	 * Create a new formatter.
 	 */
 	public MinimalFormatter() {
 		super();
-		this.today = Text.getToday();
 	}
 
 
@@ -35,24 +34,21 @@ public class MinimalFormatter implements IFormatter{
 	}
 
 	@Override
-	public String format(ILogRecord record) {
-		
-		StringBuilder buffer = new StringBuilder(240);
+	public void format(ILogRecord record, StringBuilder buffer, StackTraceCache stackTraces) {
 		/*
-		 * Format the time using the reusable date object.
+		 * The time as millis since midnight.
 		 */
-		long millis = record.getMillis() - this.today;
-		buffer.append(millis);
+		buffer.append(TimestampRenderer.sinceMidnight(record.getMillis()));
 		buffer.append(Text.SPACE);
 		/*
 		 * The thread.
 		 */
-		buffer.append(record.getThreadId());
+		ThreadIdentity.appendId(record, buffer);
 		buffer.append(Text.SPACE);
 		
-		buffer.append(record.getMessage());
+		record.appendMessage(buffer);
 		buffer.append(Text.NEW_LINE);
-		return buffer.toString();
+		appendThrowable(record, stackTraces, buffer);
 	}
 
 	@Override
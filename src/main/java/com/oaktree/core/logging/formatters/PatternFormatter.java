@@ -0,0 +1,289 @@
+package com.oaktree.core.logging.formatters;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.oaktree.core.logging.ILogRecord;
+import com.oaktree.core.logging.Markers;
+import com.oaktree.core.logging.Text;
+import com.oaktree.core.logging.ThreadIdentity;
+import com.oaktree.core.logging.TimestampRenderer;
+
+/**
+ * A formatter laid out by a pattern, e.g. in the properties file FILE.pattern=%time %tid %tname %level %msg%n
+ *
+ * Fields:
+ * <li>%time: time of day as HH:mm:ss.SSS</li>
+ * <li>%millis: millis since the epoch</li>
+ * <li>%nanos: the six digits of nanos within the milli, e.g. %time%nanos for HH:mm:ss.SSSuuunnn</li>
+ * <li>%tid: thread id</li>
+ * <li>%tname: thread name</li>
+ * <li>%level: level name</li>
+ * <li>%logger: logger name</li>
+ * <li>%msg: the message, with any arguments substituted</li>
+ * <li>%mdc: all MDC entries as key=value,key=value</li>
+ * <li>%mdc{key}: the value of one MDC entry, or nothing</li>
+ * <li>%marker: names of the record's markers, separated by commas</li>
+ * <li>%ex: the record's throwable with its stack trace, if it has one; if the pattern has no %ex
+ * it is written after the rest of the record</li>
+ * <li>%n: new line</li>
+ * <li>%%: a %</li>
+ * Anything else is written as it is.
+ *
+ * The pattern is compiled once, when set, into a chain of field writers each appending straight into the
+ * buffer, so formatting a record neither parses the pattern nor makes intermediate strings. Formatting
+ * to a string or to bytes uses a buffer per thread.
+ *
+ * @author Oak Tree Designs Ltd
+ */
+public class PatternFormatter extends AbstractFormatter {
+
+	public final static String DEFAULT_PATTERN = "%time %tid %tname %level %msg%n";
+
+	/**
+	 * Appends one field or literal of the pattern.
+	 */
+	private static interface IFieldWriter {
+		void write(ILogRecord record, StringBuilder buffer);
+	}
+
+	private static class LiteralWriter implements IFieldWriter {
+		private final String text;
+		LiteralWriter(String text) {
+			this.text = text;
+		}
+		@Override
+		public void write(ILogRecord record, StringBuilder buffer) {
+			buffer.append(text);
+		}
+	}
+
+	private final static IFieldWriter TIME = new IFieldWriter() {
+		@Override
+		public void write(ILogRecord record, StringBuilder buffer) {
+			TimestampRenderer.append(record.getMillis(), buffer);
+		}
+	};
+
+	private final static IFieldWriter NANOS = new IFieldWriter() {
+		@Override
+		public void write(ILogRecord record, StringBuilder buffer) {
+			int n = (int)(record.getNanos() % 1000000L);
+			for (int d = 100000; d > 0; d /= 10) {
+				buffer.append((char)('0' + (n / d) % 10));
+			}
+		}
+	};
+
+	private final static IFieldWriter MILLIS = new IFieldWriter() {
+		@Override
+		public void write(ILogRecord record, StringBuilder buffer) {
+			buffer.append(record.getMillis());
+		}
+	};
+
+	private final static IFieldWriter THREAD_ID = new IFieldWriter() {
+		@Override
+		public void write(ILogRecord record, StringBuilder buffer) {
+			ThreadIdentity.appendId(record, buffer);
+		}
+	};
+
+	private final static IFieldWriter THREAD_NAME = new IFieldWriter() {
+		@Override
+		public void write(ILogRecord record, StringBuilder buffer) {
+			ThreadIdentity.appendName(record, buffer);
+		}
+	};
+
+	private final static IFieldWriter LEVEL = new IFieldWriter() {
+		@Override
+		public void write(ILogRecord record, StringBuilder buffer) {
+			buffer.append(record.getLevel().name());
+		}
+	};
+
+	private final static IFieldWriter LOGGER = new IFieldWriter() {
+		@Override
+		public void write(ILogRecord record, StringBuilder buffer) {
+			if (record.getLogger() != null) {
+				buffer.append(record.getLogger().getName());
+			}
+		}
+	};
+
+	private final static IFieldWriter MESSAGE = new IFieldWriter() {
+		@Override
+		public void write(ILogRecord record, StringBuilder buffer) {
+			record.appendMessage(buffer);
+		}
+	};
+
+	private final static IFieldWriter MDC = new IFieldWriter() {
+		@Override
+		public void write(ILogRecord record, StringBuilder buffer) {
+			record.appendMdc(buffer);
+		}
+	};
+
+	private final static IFieldWriter MARKER = new IFieldWriter() {
+		@Override
+		public void write(ILogRecord record, StringBuilder buffer) {
+			Markers.appendNames(record.getMarkers(), buffer);
+		}
+	};
+
+	private static class MdcValueWriter implements IFieldWriter {
+		private final String key;
+		MdcValueWriter(String key) {
+			this.key = key;
+		}
+		@Override
+		public void write(ILogRecord record, StringBuilder buffer) {
+			String value = record.getMdcValue(key);
+			if (value != null) {
+				buffer.append(value);
+			}
+		}
+	}
+
+	/**
+	 * Marks where the throwable goes; format writes it with the cache it is given.
+	 */
+	private final IFieldWriter throwableWriter = new IFieldWriter() {
+		@Override
+		public void write(ILogRecord record, StringBuilder buffer) {
+			appendThrowable(record, null, buffer);
+		}
+	};
+
+	private final static IFieldWriter NEW_LINE = new IFieldWriter() {
+		@Override
+		public void write(ILogRecord record, StringBuilder buffer) {
+			buffer.append(Text.NEW_LINE);
+		}
+	};
+
+	private String pattern;
+	private IFieldWriter[] writers;
+
+	public PatternFormatter() {
+		this(DEFAULT_PATTERN);
+	}
+
+	public PatternFormatter(String pattern) {
+		setPattern(pattern);
+	}
+
+	/**
+	 * Set and compile the pattern.
+	 * @param pattern
+	 */
+	public void setPattern(String pattern) {
+		if (pattern == null) {
+			throw new IllegalArgumentException("Invalid pattern. Must be not-null");
+		}
+		this.writers = compile(pattern);
+		this.pattern = pattern;
+	}
+
+	public String getPattern() {
+		return pattern;
+	}
+
+	private IFieldWriter[] compile(String pattern) {
+		List<IFieldWriter> chain = new ArrayList<IFieldWriter>();
+		StringBuilder literal = new StringBuilder();
+		int i = 0;
+		while (i < pattern.length()) {
+			char c = pattern.charAt(i);
+			if (c != '%') {
+				literal.append(c);
+				i++;
+				continue;
+			}
+			IFieldWriter field = null;
+			int len = 0;
+			if (pattern.startsWith("%%", i)) {
+				literal.append('%');
+				i += 2;
+				continue;
+			} else if (pattern.startsWith("%time", i)) {
+				field = TIME;
+				len = 5;
+			} else if (pattern.startsWith("%millis", i)) {
+				field = MILLIS;
+				len = 7;
+			} else if (pattern.startsWith("%tid", i)) {
+				field = THREAD_ID;
+				len = 4;
+			} else if (pattern.startsWith("%tname", i)) {
+				field = THREAD_NAME;
+				len = 6;
+			} else if (pattern.startsWith("%level", i)) {
+				field = LEVEL;
+				len = 6;
+			} else if (pattern.startsWith("%logger", i)) {
+				field = LOGGER;
+				len = 7;
+			} else if (pattern.startsWith("%marker", i)) {
+				field = MARKER;
+				len = 7;
+			} else if (pattern.startsWith("%mdc{", i)) {
+				int end = pattern.indexOf('}', i);
+				if (end < 0) {
+					throw new IllegalArgumentException("Unclosed %mdc{ at " + i + " in pattern: " + pattern);
+				}
+				field = new MdcValueWriter(pattern.substring(i + 5, end));
+				len = end + 1 - i;
+			} else if (pattern.startsWith("%mdc", i)) {
+				field = MDC;
+				len = 4;
+			} else if (pattern.startsWith("%msg", i)) {
+				field = MESSAGE;
+				len = 4;
+			} else if (pattern.startsWith("%nanos", i)) {
+				field = NANOS;
+				len = 6;
+			} else if (pattern.startsWith("%ex", i)) {
+				field = throwableWriter;
+				len = 3;
+			} else if (pattern.startsWith("%n", i)) {
+				field = NEW_LINE;
+				len = 2;
+			} else {
+				throw new IllegalArgumentException("Unknown field at " + i + " in pattern: " + pattern);
+			}
+			if (literal.length() > 0) {
+				chain.add(new LiteralWriter(literal.toString()));
+				literal.setLength(0);
+			}
+			chain.add(field);
+			i += len;
+		}
+		if (literal.length() > 0) {
+			chain.add(new LiteralWriter(literal.toString()));
+		}
+		if (!chain.contains(throwableWriter)) {
+			chain.add(throwableWriter);
+		}
+		return chain.toArray(new IFieldWriter[chain.size()]);
+	}
+
+	@Override
+	public void format(ILogRecord record, StringBuilder buffer, StackTraceCache stackTraces) {
+		IFieldWriter[] chain = this.writers;
+		for (int i = 0; i < chain.length; i++) {
+			if (chain[i] == throwableWriter) {
+				appendThrowable(record, stackTraces, buffer);
+			} else {
+				chain[i].write(record, buffer);
+			}
+		}
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getName() + " pattern: " + pattern;
+	}
+}
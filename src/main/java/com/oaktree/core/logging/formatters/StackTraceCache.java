@@ -0,0 +1,108 @@
+package com.oaktree.core.logging.formatters;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The stack traces a handler has already written, least recently seen dropped first, so that when the
+ * same exception is thrown over and over its trace is written once and then referred to by id. The id
+ * is a hash of the classes and frames of the throwable and its causes, not their messages.
+ *
+ * @author Oak Tree Designs Ltd
+ */
+public class StackTraceCache {
+
+	public final static int DEFAULT_SIZE = 1024;
+	private final static char[] HEX = "0123456789abcdef".toCharArray();
+
+	private final Map<Long, Boolean> written;
+	private final int capacity;
+
+	public StackTraceCache() {
+		this(DEFAULT_SIZE);
+	}
+
+	public StackTraceCache(final int size) {
+		if (size <= 0) {
+			throw new IllegalArgumentException("Invalid size: " + size + ". Must be positive");
+		}
+		this.capacity = size;
+		this.written = new LinkedHashMap<Long, Boolean>(Math.min(size, DEFAULT_SIZE) * 2, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, Boolean> eldest) {
+				return size() > size;
+			}
+		};
+	}
+
+	/**
+	 * Note a stack trace as written.
+	 * @param id
+	 * @return true if it had been written already.
+	 */
+	public synchronized boolean isWritten(long id) {
+		return written.put(id, Boolean.TRUE) != null;
+	}
+
+	/**
+	 * Forget the stack traces written, e.g. when the handler starts a new file.
+	 */
+	public synchronized void clear() {
+		written.clear();
+	}
+
+	public synchronized int size() {
+		return written.size();
+	}
+
+	/**
+	 * @return most stack traces remembered.
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Hash the classes and frames of a throwable and its causes.
+	 * @param t
+	 * @return id of the stack trace.
+	 */
+	public static long hash(Throwable t) {
+		long h = 0;
+		Throwable cause = t;
+		for (int i = 0; cause != null && i <= ThrowableRenderer.MAX_CAUSES; i++) {
+			h = h * 0x9E3779B97F4A7C15L + cause.getClass().getName().hashCode();
+			for (StackTraceElement frame:cause.getStackTrace()) {
+				h = h * 0x9E3779B97F4A7C15L + frame.getClassName().hashCode();
+				h = h * 0x9E3779B97F4A7C15L + frame.getMethodName().hashCode();
+				h = h * 0x9E3779B97F4A7C15L + frame.getLineNumber();
+			}
+			Throwable next = cause.getCause();
+			cause = next == cause ? null : next;
+		}
+		//spread the bits (murmur3 finaliser) as for message hashes.
+		h ^= h >>> 33;
+		h *= 0xFF51AFD7ED558CCDL;
+		h ^= h >>> 33;
+		h *= 0xC4CEB9FE1A85EC53L;
+		h ^= h >>> 33;
+		return h;
+	}
+
+	/**
+	 * Render an id as 16 hex digits.
+	 * @param id
+	 * @param buffer
+	 */
+	public static void appendId(long id, StringBuilder buffer) {
+		for (int shift = 60; shift >= 0; shift -= 4) {
+			buffer.append(HEX[(int)(id >>> shift) & 0xF]);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "StackTraceCache written: " + size();
+	}
+}
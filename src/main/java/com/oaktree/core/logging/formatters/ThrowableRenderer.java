@@ -0,0 +1,122 @@
+package com.oaktree.core.logging.formatters;
+
+import com.oaktree.core.logging.Text;
+
+/**
+ * Renders a throwable as printStackTrace does, straight into a buffer: the throwable, its frames, then
+ * each cause with the frames it shares with the one it caused elided. Called by handlers as they format
+ * a record, so on the background thread if there is one, never the logging thread. Given a
+ * StackTraceCache a trace already written is referred to by its id rather than written again.
+ *
+ * @author Oak Tree Designs Ltd
+ */
+public final class ThrowableRenderer {
+
+	/**
+	 * Causes beyond this many are not rendered; also guards against cycles.
+	 */
+	public final static int MAX_CAUSES = 16;
+
+	private ThrowableRenderer() {}
+
+	/**
+	 * Render the throwable and its causes.
+	 * @param t
+	 * @param buffer
+	 */
+	public static void append(Throwable t, StringBuilder buffer) {
+		appendHeader(t, buffer);
+		appendStack(t, buffer);
+	}
+
+	/**
+	 * Render the throwable with the id of its stack trace; then, the first time the cache sees it,
+	 * the trace as append(Throwable, StringBuilder) does.
+	 * @param t
+	 * @param cache null to always write the trace, without an id.
+	 * @param buffer
+	 */
+	public static void append(Throwable t, StackTraceCache cache, StringBuilder buffer) {
+		if (cache == null) {
+			append(t, buffer);
+			return;
+		}
+		long id = StackTraceCache.hash(t);
+		boolean written = cache.isWritten(id);
+		appendDescription(t, buffer);
+		buffer.append(" [stack ");
+		StackTraceCache.appendId(id, buffer);
+		buffer.append(written ? " repeated]" : "]").append(Text.NEW_LINE);
+		if (!written) {
+			appendStack(t, buffer);
+		}
+	}
+
+	private static void appendStack(Throwable t, StringBuilder buffer) {
+		StackTraceElement[] frames = t.getStackTrace();
+		appendFrames(frames, frames.length, buffer);
+		Throwable cause = t.getCause();
+		for (int i = 0; cause != null && cause != t && i < MAX_CAUSES; i++) {
+			StackTraceElement[] causeFrames = cause.getStackTrace();
+			int unique = uniqueFrames(causeFrames, frames);
+			buffer.append("Caused by: ");
+			appendHeader(cause, buffer);
+			appendFrames(causeFrames, unique, buffer);
+			if (unique < causeFrames.length) {
+				buffer.append("\t... ").append(causeFrames.length - unique).append(" more").append(Text.NEW_LINE);
+			}
+			frames = causeFrames;
+			t = cause;
+			cause = cause.getCause();
+		}
+	}
+
+	/**
+	 * Render the class and message of the throwable, as its toString does.
+	 * @param t
+	 * @param buffer
+	 */
+	public static void appendHeader(Throwable t, StringBuilder buffer) {
+		appendDescription(t, buffer);
+		buffer.append(Text.NEW_LINE);
+	}
+
+	private static void appendDescription(Throwable t, StringBuilder buffer) {
+		buffer.append(t.getClass().getName());
+		String message = t.getLocalizedMessage();
+		if (message != null) {
+			buffer.append(": ").append(message);
+		}
+	}
+
+	private static void appendFrames(StackTraceElement[] frames, int count, StringBuilder buffer) {
+		for (int i = 0; i < count; i++) {
+			StackTraceElement frame = frames[i];
+			buffer.append("\tat ").append(frame.getClassName()).append('.').append(frame.getMethodName()).append('(');
+			if (frame.isNativeMethod()) {
+				buffer.append("Native Method");
+			} else if (frame.getFileName() == null) {
+				buffer.append("Unknown Source");
+			} else {
+				buffer.append(frame.getFileName());
+				if (frame.getLineNumber() >= 0) {
+					buffer.append(':').append(frame.getLineNumber());
+				}
+			}
+			buffer.append(')').append(Text.NEW_LINE);
+		}
+	}
+
+	/**
+	 * @return number of frames of the cause before those it has in common with what it caused.
+	 */
+	private static int uniqueFrames(StackTraceElement[] cause, StackTraceElement[] caused) {
+		int m = cause.length - 1;
+		int n = caused.length - 1;
+		while (m >= 0 && n >= 0 && cause[m].equals(caused[n])) {
+			m--;
+			n--;
+		}
+		return m + 1;
+	}
+}
@@ -0,0 +1,70 @@
+package com.oaktree.core.logging.formatters;
+
+import java.nio.ByteBuffer;
+
+/**
+ * UTF-8 encoding of chars straight into a byte buffer, with no intermediate arrays. ASCII, the bulk
+ * of most logs, is a single compare and put per char.
+ *
+ * @author Oak Tree Designs Ltd
+ */
+public final class Utf8 {
+
+	private Utf8() {}
+
+	/**
+	 * Encode the chars into the buffer from its position. Unpaired surrogates are written as '?'.
+	 * @param chars
+	 * @param buffer
+	 * @return false, with the buffer position unchanged, if the chars did not fit.
+	 */
+	public static boolean encode(CharSequence chars, ByteBuffer buffer) {
+		int start = buffer.position();
+		int length = chars.length();
+		if (buffer.remaining() < length) {
+			return false; //every char takes at least a byte.
+		}
+		for (int i = 0; i < length; i++) {
+			char c = chars.charAt(i);
+			if (c < 0x80) {
+				if (!buffer.hasRemaining()) {
+					return overflow(buffer, start);
+				}
+				buffer.put((byte)c);
+			} else if (c < 0x800) {
+				if (buffer.remaining() < 2) {
+					return overflow(buffer, start);
+				}
+				buffer.put((byte)(0xC0 | (c >> 6)));
+				buffer.put((byte)(0x80 | (c & 0x3F)));
+			} else if (c < Character.MIN_SURROGATE || c > Character.MAX_SURROGATE) {
+				if (buffer.remaining() < 3) {
+					return overflow(buffer, start);
+				}
+				buffer.put((byte)(0xE0 | (c >> 12)));
+				buffer.put((byte)(0x80 | ((c >> 6) & 0x3F)));
+				buffer.put((byte)(0x80 | (c & 0x3F)));
+			} else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(chars.charAt(i + 1))) {
+				if (buffer.remaining() < 4) {
+					return overflow(buffer, start);
+				}
+				int cp = Character.toCodePoint(c, chars.charAt(++i));
+				buffer.put((byte)(0xF0 | (cp >> 18)));
+				buffer.put((byte)(0x80 | ((cp >> 12) & 0x3F)));
+				buffer.put((byte)(0x80 | ((cp >> 6) & 0x3F)));
+				buffer.put((byte)(0x80 | (cp & 0x3F)));
+			} else {
+				if (!buffer.hasRemaining()) {
+					return overflow(buffer, start);
+				}
+				buffer.put((byte)'?');
+			}
+		}
+		return true;
+	}
+
+	private static boolean overflow(ByteBuffer buffer, int start) {
+		buffer.position(start);
+		return false;
+	}
+}
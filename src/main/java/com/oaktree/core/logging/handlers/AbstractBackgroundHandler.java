@@ -2,17 +2,40 @@ package com.oaktree.core.logging.handlers;
 
 import com.oaktree.core.logging.ILogRecord;
 import com.oaktree.core.logging.Level;
+import com.oaktree.core.logging.LogRecord;
 import com.oaktree.core.logging.formatters.IFormatter;
+import com.oaktree.core.logging.pool.IObjectFactory;
+import com.oaktree.core.logging.pool.RingBuffer;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * A handler that performs formatting and flush in a background thread. 
- * Publications to the real handler will occur in batches; if batches of > 1 are specified (10 default)
- * then we will sleep between batches; this delay uses Thread.sleep which may not be entirely accurate.
+ * Publications to the real handler will occur in batches of up to batchSize (10 default); when there is
+ * nothing to process the flush policy is invoked, by default adaptive: spin, then yield, then park until
+ * a logging thread signals that it has queued a record.
+ * 
+ * Records are copied into the preallocated slots of a ring buffer by the logging thread, so the
+ * caller's record is finished with as soon as publish returns and nothing is allocated per record. 
+ * Message arguments are copied unrendered so formatting still happens on the background thread.
+ * 
+ * Where one processing thread cannot keep up the handler can be split into lanes, each with its own
+ * ring and processing thread. A logging thread always uses the same lane, chosen by its thread id, so
+ * the records of each thread are written in the order they were logged. Lanes either share the one
+ * delegate, taking turns to write whole batches (SHARED), or each write to their own delegate e.g. a
+ * file per lane (SEPARATE) where the handler supports it; lane 0 always writes to ours.
+ *
+ * Records published before start are copied and held until start hands them to the lanes.
+ *
+ * Given a repeat window each lane's delegate is wrapped in a RepeatSuppressingHandler, so repeats are
+ * found by the processor threads rather than under a lock taken by every logging thread.
+ *
+ * A batch the delegate fails to write is reported and passed over; the processor carries on with the next.
+ * Once a processor has stopped, whether by stop or because it died, its ring is closed and records
+ * published to it are dropped rather than left waiting for space that will never come.
+ *
  * Note that due to the very nature of backgrounding publication is not guaranteed; if an application terminates
  * abruptly then records waiting to be flushed (especially relevant with batches > 1) may be missed.
  * 
@@ -25,10 +48,22 @@ public abstract class AbstractBackgroundHandler implements IBackgroundLoggingHan
 	 * Terminate background processing.
 	 */
 	public void stop() {
-		this.processor.terminate();
-		if (this.handler != null) {
+		Lane[] lanes = this.lanes;
+		for (Lane lane:lanes) {
+			lane.processor.terminate();
+		}
+		//lane 0 writes to our delegate, or what wraps it; other lanes to the same or their own.
+		for (int i = 0; i < lanes.length; i++) {
+			if (i == 0 || lanes[i].handler != lanes[0].handler) {
+				lanes[i].handler.stop();
+			}
+		}
+		if (lanes.length == 0 && this.handler != null) {
 			this.handler.stop();
 		}
+		if (this.getDropped() > 0) {
+			System.err.println("Background handler " + name + " dropped " + this.getDropped() + " records with overflow policy " + this.overflow);
+		}
 	}
 	
 	/**
@@ -43,6 +78,11 @@ public abstract class AbstractBackgroundHandler implements IBackgroundLoggingHan
 	 */
 	protected ILoggingHandler handler;
 	
+	/**
+	 * Formatter given to us, kept so it can be handed to lane delegates.
+	 */
+	private IFormatter formatter;
+
 	@Override
 	public ILoggingHandler getHandler() {
 		return this.handler;
@@ -54,9 +94,14 @@ public abstract class AbstractBackgroundHandler implements IBackgroundLoggingHan
 	}
 	
 	/**
-	 * A queue that all the incoming and as yet unwritten records are written to. 
+	 * Default number of records that may be waiting to be written.
+	 */
+	private final static int DEFAULT_QUEUE_SIZE = 8192;
+	
+	/**
+	 * Capacity of the ring of each lane.
 	 */
-	private LinkedBlockingQueue<ILogRecord> queue = new LinkedBlockingQueue<ILogRecord>();
+	private int queueSize = DEFAULT_QUEUE_SIZE;
 	
 	/**
 	 * Batch size for processing. More immediate writes are obtained with batch of 1 though
@@ -64,32 +109,120 @@ public abstract class AbstractBackgroundHandler implements IBackgroundLoggingHan
 	 */
 	private int batchSize = 10;
 
+	/**
+	 * Number of lanes, each with its own ring and processing thread.
+	 */
+	private int laneCount = 1;
+
+	/**
+	 * Whether lanes write to their own delegates rather than sharing ours.
+	 */
+	private boolean separateLaneOutput = false;
+
+	/**
+	 * The lanes made at start; none before.
+	 */
+	private volatile Lane[] lanes = new Lane[0];
+
+	/**
+	 * Copies of records published before start, in order; null once started. Guards the swap to lanes.
+	 */
+	private List<ILogRecord> early = new ArrayList<ILogRecord>();
+	/**
+	 * Ids of the threads that published the early records, so each goes to its thread's lane.
+	 */
+	private List<Long> earlyThreads = new ArrayList<Long>();
+	private final Object startLock = new Object();
+
+	/**
+	 * What to do when the ring is full. Named in the properties file as one of BLOCK, DROP_NEWEST,
+	 * DROP_OLDEST, DROP_BELOW_LEVEL or SPIN and made at start.
+	 */
+	private IOverflowPolicy overflow = new BlockingOverflowPolicy();
+	private String overflowPolicyName;
+	/**
+	 * Records dropped because their lane's processor had stopped before the policy was asked; the
+	 * policy counts those refused as the ring closes.
+	 */
+	private final AtomicLong closedDrops = new AtomicLong(0);
+	/**
+	 * For DROP_BELOW_LEVEL; records at or above this level are never dropped.
+	 */
+	private Level overflowLevel = Level.WARN;
+	/**
+	 * For SPIN; longest a logging thread will spin for a free slot, in micros.
+	 */
+	private long overflowTimeout = 100;
+	/**
+	 * Window of millis in which repeated messages are suppressed; 0 for none.
+	 */
+	private long repeatWindow = 0;
+
     /**
      * flushing policy - wait, yield, busy etc.
      */
-    private IBackgroundFlushPolicy policy = new SleepingFlushPolicy(1);
-
+    private IBackgroundFlushPolicy policy = new AdaptiveFlushPolicy();
 	/**
-	 * background thread processor of events.
+	 * Name the flushing policy was configured by, if any, so each lane can have its own.
 	 */
-	private Processor processor;
+	private String flushPolicyName;
 	
 	/**
-	 * The processing thread. Reads off the queue and hands to the delegate.
+	 * A record living in a slot of the ring. These are owned by the ring, not a logger pool, so
+	 * processing one never frees it anywhere; the slot is reused once the processor releases it.
+	 */
+	private static class SlotRecord extends LogRecord {
+		@Override
+		public void onProcessed(ILoggingHandler handler) {
+		}
+	}
+	
+	private static RingBuffer<ILogRecord> makeQueue(int size) {
+		return new RingBuffer<ILogRecord>(size, new IObjectFactory<ILogRecord>() {
+			@Override
+			public ILogRecord make() {
+				return new SlotRecord();
+			}
+		});
+	}
+	
+	/**
+	 * A ring, the thread that empties it and the delegate it writes to.
+	 */
+	private static class Lane {
+		private final RingBuffer<ILogRecord> queue;
+		private final IBackgroundFlushPolicy policy;
+		private final ILoggingHandler handler;
+		private final Processor processor;
+		Lane(RingBuffer<ILogRecord> queue, IBackgroundFlushPolicy policy, ILoggingHandler handler, Object lock, int batchSize) {
+			this.queue = queue;
+			this.policy = policy;
+			this.handler = handler;
+			this.processor = new Processor(handler, lock, queue, policy, batchSize);
+		}
+	}
+
+	/**
+	 * The processing thread. Reads off the ring and hands to the delegate.
 	 * @author Oak Tree Designs Ltd
 	 *
 	 */
-	private class Processor extends Thread {
+	private static class Processor extends Thread {
+		/**
+		 * The actual handler.
+		 */
+		private ILoggingHandler handler;
 		/**
-		 * Wrapper round the actual handler.
+		 * Held while writing when the handler is shared with other lanes, otherwise null.
 		 */
-		private AbstractBackgroundHandler handler;
+		private Object lock;
 		/**
-		 * The queue records are being put onto.
+		 * The ring records are being put onto.
 		 */
-		private BlockingQueue<ILogRecord> queue;
+		private RingBuffer<ILogRecord> queue;
+		private IBackgroundFlushPolicy policy;
 		private int batchSize;
-		public Processor(AbstractBackgroundHandler h, LinkedBlockingQueue<ILogRecord> queue, int batchSize) {
+		public Processor(ILoggingHandler h, Object lock, RingBuffer<ILogRecord> queue, IBackgroundFlushPolicy policy, int batchSize) {
 			if (batchSize <= 0) {
 				throw new IllegalArgumentException("Batchsize must be > 0");
 			}
@@ -97,47 +230,80 @@ public abstract class AbstractBackgroundHandler implements IBackgroundLoggingHan
 				throw new IllegalArgumentException("Null handler supplied");
 			}
 			this.handler = h;
+			this.lock = lock;
 			this.batchSize = batchSize;
 			this.queue = queue;
+			this.policy = policy;
 		}
+		/**
+		 * Stop processing and wait for the processor to write what remains in the ring.
+		 */
 		public void terminate() {
 			work = false;
 			this.interrupt();
-			List<ILogRecord> batcher = new ArrayList<ILogRecord>();
-			this.queue.drainTo(batcher);
-			this.handler.getHandler().publish(batcher);
+			try {
+				this.join(5000);
+			} catch (InterruptedException e) {
+			}
 		}
 		
 		private volatile boolean work = true;
 		@Override
 		public void run() {
-			 List<ILogRecord> batch = new ArrayList<ILogRecord>();
-				try {
+			List<ILogRecord> batch = new ArrayList<ILogRecord>(batchSize);
+			try {
 				while (work) {
-					//batches of 1 will just use the standard blocking take call.
-					if (this.batchSize == 1) {
-						this.handler.getHandler().publish(this.queue.take());
+					if (process(batch) > 0) {
+						policy.onBatchProcessed();
 					} else {
-						int sz = queue.size() ;
-						int bs = this.batchSize;
-						if (sz > 100) {
-							System.err.println("Queue size is bloated: " + sz);
-							bs = 20000;
-						}
-						if (sz> 0) {
-							this.queue.drainTo(batch,bs);
-						
-							this.handler.getHandler().publish(batch);
-							batch.clear();
-						}
-						
-                       policy.onBatchProcessed();
+						policy.onIdle();
 					}
 				}
-			} catch (Exception e) {
+				//the ring is only ever consumed by this thread, so flush what is left here.
+				while (process(batch) > 0) {
+				}
+			} finally {
+				//nothing will empty the ring now so logging threads must not wait on it.
+				queue.close();
+				System.err.println("Exiting processing loop");
+			}
+		}
+		
+		/**
+		 * Hand the next batch of published records to the delegate and release their slots.
+		 * @param batch
+		 * @return number of records processed.
+		 */
+		private int process(List<ILogRecord> batch) {
+			int n = this.queue.drainTo(batch, this.batchSize);
+			if (n == 0) {
+				return 0;
+			}
+			try {
+				if (lock == null) {
+					write(batch, n);
+				} else {
+					synchronized (lock) {
+						write(batch, n);
+					}
+				}
+			} catch (RuntimeException e) {
+				//one bad batch must not stop the lane.
+				System.err.println("Background handler failed to write " + n + " records to " + handler + ": " + e);
 				e.printStackTrace();
+			} finally {
+				batch.clear();
+				this.queue.release();
+			}
+			return n;
+		}
+		private void write(List<ILogRecord> batch, int n) {
+			//batches of 1 go straight through as single records.
+			if (n == 1) {
+				this.handler.publish(batch.get(0));
+			} else {
+				this.handler.publish(batch);
 			}
-			System.err.println("Exiting processing loop");
 		}
 		public int getBatchSize() {
 			return batchSize;
@@ -152,14 +318,60 @@ public abstract class AbstractBackgroundHandler implements IBackgroundLoggingHan
 	
 	@Override
 	public void publish(ILogRecord record) {
-		if (record == null || this.level.intValue() > record.getLevel().intValue()) {
+		if (record == null) {
+			return;
+		}
+		if (this.level.intValue() > record.getLevel().intValue()) {
+			record.onProcessed(this);
 			return;
 		}
-		queue.add(record);
+		Lane[] lanes = this.lanes;
+		if (lanes.length == 0) {
+			synchronized (startLock) {
+				if (early != null) {
+					LogRecord copy = new LogRecord();
+					copy.copyFrom(record);
+					early.add(copy);
+					earlyThreads.add(Thread.currentThread().getId());
+					record.onProcessed(this);
+					return;
+				}
+			}
+			lanes = this.lanes;
+		}
+		enqueue(lanes, Thread.currentThread().getId(), record);
+		//we have taken a copy (or dropped it) so the caller's record is free to go.
+		record.onProcessed(this);
+	}
+
+	/**
+	 * Copy the record into the ring of the lane of the thread that logged it.
+	 * @param lanes
+	 * @param threadId
+	 * @param record
+	 */
+	private void enqueue(Lane[] lanes, long threadId, ILogRecord record) {
+		Lane lane = lanes.length == 1 ? lanes[0] : lanes[(int)(threadId % lanes.length)];
+		RingBuffer<ILogRecord> queue = lane.queue;
+		//a policy counts every record it refuses, so count here only those it never saw.
+		if (queue.isClosed()) {
+			closedDrops.incrementAndGet();
+			return;
+		}
+		long seq = overflow.claim(queue, record);
+		if (seq >= 0) {
+			try {
+				((LogRecord)queue.get(seq)).copyFrom(record);
+			} finally {
+				queue.publish(seq);
+			}
+			lane.policy.signal();
+		}
 	}
 
 	@Override
 	public void setFormatter(IFormatter f) {
+		this.formatter = f;
 		this.getHandler().setFormatter(f);
 	}
 
@@ -169,6 +381,11 @@ public abstract class AbstractBackgroundHandler implements IBackgroundLoggingHan
 		this.getHandler().setLevel(l);
 	}
 
+	@Override
+	public boolean isEnabled(Level l) {
+		return this.level.intValue() <= l.intValue();
+	}
+
 	@Override
 	public void publish(List<ILogRecord> batch) {
 		for (ILogRecord record:batch) {
@@ -179,24 +396,250 @@ public abstract class AbstractBackgroundHandler implements IBackgroundLoggingHan
 	public void setBatchSize(String batchSize) {
 		this.batchSize = Integer.valueOf(batchSize);
 	}
+	
+	/**
+	 * Set the capacity of the ring of waiting records (rounded up to a power of two), per lane.
+	 * Configuration time only; must be called before start.
+	 * @param queueSize
+	 */
+	public void setQueueSize(String queueSize) {
+		this.queueSize = Integer.valueOf(queueSize.trim());
+	}
+
+	/**
+	 * Set the number of lanes i.e. rings and processing threads. Configuration time only.
+	 * @param lanes
+	 */
+	public void setLanes(String lanes) {
+		int n = Integer.valueOf(lanes.trim());
+		if (n <= 0) {
+			throw new IllegalArgumentException("Invalid lanes: " + lanes);
+		}
+		this.laneCount = n;
+	}
+
+	public int getLanes() {
+		return this.laneCount;
+	}
+
+	/**
+	 * Choose where lanes write: SHARED (default) to our one delegate or SEPARATE to a delegate per lane.
+	 * @param laneOutput
+	 */
+	public void setLaneOutput(String laneOutput) {
+		String name = laneOutput.trim().toUpperCase();
+		if ("SHARED".equals(name)) {
+			this.separateLaneOutput = false;
+		} else if ("SEPARATE".equals(name)) {
+			this.separateLaneOutput = true;
+		} else {
+			throw new IllegalArgumentException("Invalid lane output: " + laneOutput);
+		}
+	}
+
+	/**
+	 * Make a delegate for a lane writing SEPARATE output. Not supported unless overridden.
+	 * @param lane
+	 * @return new unstarted delegate or null if lanes must share our delegate.
+	 */
+	protected ILoggingHandler makeLaneHandler(int lane) {
+		return null;
+	}
+
+	/**
+	 * Choose what happens when the ring is full: BLOCK (default), DROP_NEWEST, DROP_OLDEST,
+	 * DROP_BELOW_LEVEL or SPIN.
+	 * @param overflowPolicy
+	 */
+	public void setOverflowPolicy(String overflowPolicy) {
+		this.overflowPolicyName = overflowPolicy.trim().toUpperCase();
+	}
+	
+	/**
+	 * Level at and above which DROP_BELOW_LEVEL will wait rather than drop.
+	 * @param level
+	 */
+	public void setOverflowLevel(String level) {
+		this.overflowLevel = Level.parse(level.trim());
+	}
+	
+	/**
+	 * Longest time, in micros, the SPIN overflow policy waits for a free slot before dropping.
+	 * @param micros
+	 */
+	public void setOverflowTimeout(String micros) {
+		this.overflowTimeout = Long.valueOf(micros.trim());
+	}
+	
+	/**
+	 * Pass on only the first of a run of identical messages, then a count, per window of millis.
+	 * Configuration time only; must be called before start.
+	 * @param millis
+	 */
+	public void setRepeatWindow(String millis) {
+		this.repeatWindow = Long.valueOf(millis.trim());
+	}
+
+	public long getRepeatWindow() {
+		return this.repeatWindow;
+	}
+
+	/**
+	 * Inject an overflow policy directly.
+	 * @param overflow
+	 */
+	public void setOverflowHandling(IOverflowPolicy overflow) {
+		this.overflow = overflow;
+		this.overflowPolicyName = null;
+	}
+	
+	public IOverflowPolicy getOverflowHandling() {
+		return this.overflow;
+	}
+	
+	/**
+	 * @return number of records dropped because the ring was full or its processor had stopped.
+	 */
+	public long getDropped() {
+		return this.overflow.getDropped() + this.closedDrops.get();
+	}
+	
+	private IOverflowPolicy makeOverflowPolicy(String name) {
+		if ("BLOCK".equals(name)) {
+			return new BlockingOverflowPolicy();
+		} else if ("DROP_NEWEST".equals(name)) {
+			return new DropNewestOverflowPolicy();
+		} else if ("DROP_OLDEST".equals(name)) {
+			return new DropOldestOverflowPolicy();
+		} else if ("DROP_BELOW_LEVEL".equals(name)) {
+			return new DropBelowLevelOverflowPolicy(overflowLevel);
+		} else if ("SPIN".equals(name)) {
+			return new SpinningOverflowPolicy(overflowTimeout * 1000);
+		}
+		throw new IllegalArgumentException("Invalid overflow policy: " + name);
+	}
 
+	/**
+	 * Inject a flush policy directly. With more than one lane each further lane gets a new
+	 * instance of the same class.
+	 * @param flushPolicy
+	 */
     public void setFlushPolicy(IBackgroundFlushPolicy flushPolicy) {
         this.policy = flushPolicy;
+        this.flushPolicyName = null;
     }
+
+	/**
+	 * Choose what the processor does when there is nothing to flush: ADAPTIVE (default), BUSY, YIELD,
+	 * SLEEP (1ms) or the class name of an IBackgroundFlushPolicy with a no-arg constructor.
+	 * @param flushPolicy
+	 */
+	public void setFlushPolicy(String flushPolicy) {
+		this.policy = makeFlushPolicy(flushPolicy.trim());
+		this.flushPolicyName = flushPolicy.trim();
+	}
+
+	public IBackgroundFlushPolicy getFlushPolicy() {
+		return this.policy;
+	}
+
+	private IBackgroundFlushPolicy makeFlushPolicy(String name) {
+		if ("ADAPTIVE".equalsIgnoreCase(name)) {
+			return new AdaptiveFlushPolicy();
+		} else if ("BUSY".equalsIgnoreCase(name)) {
+			return new BusyFlushPolicy();
+		} else if ("YIELD".equalsIgnoreCase(name)) {
+			return new YieldingFlushPolicy();
+		} else if ("SLEEP".equalsIgnoreCase(name)) {
+			return new SleepingFlushPolicy(1);
+		}
+		try {
+			return (IBackgroundFlushPolicy)Class.forName(name).newInstance();
+		} catch (Exception e) {
+			throw new IllegalArgumentException("Invalid flush policy: " + name, e);
+		}
+	}
+
+	/**
+	 * Flush policies keep per thread state so each lane needs its own.
+	 * @param lane
+	 * @return policy for the lane
+	 */
+	private IBackgroundFlushPolicy makeLanePolicy(int lane) {
+		if (lane == 0) {
+			return this.policy;
+		}
+		return makeFlushPolicy(this.flushPolicyName != null ? this.flushPolicyName : this.policy.getClass().getName());
+	}
+
+	/**
+	 * Make the delegate for a lane; our own for lane 0 or unless lanes write separately and we can make one.
+	 * @param lane
+	 * @return delegate
+	 */
+	private ILoggingHandler makeLaneDelegate(int lane) {
+		if (!this.separateLaneOutput || lane == 0) {
+			return this.handler;
+		}
+		ILoggingHandler h = makeLaneHandler(lane);
+		if (h == null) {
+			System.err.println("Background handler " + name + " cannot make separate lane output; lanes will share " + this.handler);
+			this.separateLaneOutput = false;
+			return this.handler;
+		}
+		h.setName(this.handler.getName() + "." + lane);
+		if (this.formatter != null) {
+			h.setFormatter(this.formatter);
+		}
+		h.setLevel(this.level);
+		return h;
+	}
 	
+	private ILoggingHandler suppressRepeats(ILoggingHandler delegate) {
+		return this.repeatWindow > 0 ? new RepeatSuppressingHandler(delegate, this.repeatWindow) : delegate;
+	}
+
 	@Override
 	public void start() {
-		//create process in start rather than in constructor...
-		this.processor = new Processor(this,this.queue,this.batchSize );
-		processor.setName("LogProcessor");
-		//set as daemon if batch sizes are small; if large then you may well lose records when
-		//an application terminates normally.		
-		processor.setDaemon(true);
-		processor.start();
-        System.out.println("Configuring background handler: " + getClass().getName() + " with batchsize: " + this.batchSize + " flushpolicy: " + this.policy.getClass().getName());
-		if (this.handler != null) {
-			this.handler.start();
+		if (this.overflowPolicyName != null) {
+			this.overflow = makeOverflowPolicy(this.overflowPolicyName);
+		}
+		//create lanes and processors in start rather than in constructor...
+		ILoggingHandler[] delegates = new ILoggingHandler[this.laneCount];
+		ILoggingHandler ours = suppressRepeats(this.handler);
+		for (int i = 0; i < delegates.length; i++) {
+			ILoggingHandler delegate = makeLaneDelegate(i);
+			delegates[i] = delegate == this.handler ? ours : suppressRepeats(delegate);
+		}
+		Lane[] lanes = new Lane[this.laneCount];
+		for (int i = 0; i < lanes.length; i++) {
+			Object lock = this.laneCount > 1 && !this.separateLaneOutput ? this.handler : null;
+			lanes[i] = new Lane(makeQueue(this.queueSize), makeLanePolicy(i), delegates[i], lock, this.batchSize);
+		}
+		//delegates first so they are ready before anything is written to them.
+		for (int i = 0; i < lanes.length; i++) {
+			if (i == 0 || lanes[i].handler != lanes[0].handler) {
+				lanes[i].handler.start();
+			}
+		}
+		for (int i = 0; i < lanes.length; i++) {
+			Processor processor = lanes[i].processor;
+			processor.setName(lanes.length == 1 ? "LogProcessor" : "LogProcessor-" + i);
+			//set as daemon if batch sizes are small; if large then you may well lose records when
+			//an application terminates normally.
+			processor.setDaemon(true);
+			processor.start();
+		}
+		//records held from before start go first; anyone publishing meanwhile waits for them.
+		synchronized (startLock) {
+			for (int i = 0; i < early.size(); i++) {
+				enqueue(lanes, earlyThreads.get(i), early.get(i));
+			}
+			early = null;
+			earlyThreads = null;
+			this.lanes = lanes;
 		}
+        System.out.println("Configuring background handler: " + getClass().getName() + " with batchsize: " + this.batchSize + " queuesize: " + lanes[0].queue.getCapacity() + " lanes: " + lanes.length + (this.separateLaneOutput ? " (separate output)" : "") + " overflow: " + this.overflow + " flushpolicy: " + this.policy.getClass().getName());
 	}
 
 
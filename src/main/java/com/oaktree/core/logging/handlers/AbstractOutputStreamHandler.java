@@ -2,8 +2,11 @@ package com.oaktree.core.logging.handlers;
 
 import com.oaktree.core.logging.ILogRecord;
 import com.oaktree.core.logging.Level;
+import com.oaktree.core.logging.formatters.AbstractFormatter;
 import com.oaktree.core.logging.formatters.ConsoleFormatter;
 import com.oaktree.core.logging.formatters.IFormatter;
+import com.oaktree.core.logging.formatters.StackTraceCache;
+import com.oaktree.core.logging.formatters.Utf8;
 
 import javax.management.InstanceAlreadyExistsException;
 import javax.management.MBeanServer;
@@ -11,6 +14,7 @@ import javax.management.ObjectName;
 
 import java.io.OutputStream;
 import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.util.List;
 
@@ -19,6 +23,10 @@ import java.util.List;
  * the output stream to write to in the method getOutputStream. For example, something that wishes to write to
  * the console would return stdout.
  * 
+ * When the encoding is UTF-8, records are formatted into a char buffer and encoded straight into a
+ * byte buffer, both kept per thread, and written from there, rather than made into a string and then a
+ * byte array. Each record is formatted once however often its bytes have to be flushed or the buffer
+ * grown.
  */
 
 public abstract class AbstractOutputStreamHandler implements IOutputStreamHandler {
@@ -40,10 +48,36 @@ public abstract class AbstractOutputStreamHandler implements IOutputStreamHandle
 	 */
 	protected Level level = Level.INFO;
 
+	private final static Charset UTF8 = Charset.forName("UTF-8");
+	private final static int BYTE_BUFFER_SIZE = 1024;
+	/**
+	 * Byte buffers larger than this are not kept for reuse.
+	 */
+	private final static int MAX_KEPT_BYTE_BUFFER = 64 * 1024;
+
+	/**
+	 * Stack traces already written, passed to the formatter; null to write every one in full.
+	 */
+	private StackTraceCache stackTraces;
+
 	private Charset encoding = Charset.defaultCharset();
 	public void setEncoding(String charset) {
 		this.encoding = Charset.forName(charset);
 	}
+
+	private final ThreadLocal<StringBuilder> chars = new ThreadLocal<StringBuilder>() {
+		@Override
+		protected StringBuilder initialValue() {
+			return new StringBuilder(BYTE_BUFFER_SIZE);
+		}
+	};
+
+	private final ThreadLocal<ByteBuffer> bytes = new ThreadLocal<ByteBuffer>() {
+		@Override
+		protected ByteBuffer initialValue() {
+			return ByteBuffer.allocate(BYTE_BUFFER_SIZE);
+		}
+	};
 	
 	public AbstractOutputStreamHandler() {
 		this.registerJMX();
@@ -56,14 +90,28 @@ public abstract class AbstractOutputStreamHandler implements IOutputStreamHandle
 	
 	@Override
 	public void publish(ILogRecord record) {
+		if (record == null) {
+			return;
+		}
 		try {
-			if (record == null || this.level.intValue() > record.getLevel().intValue()) {
-				return;
+			if (this.level.intValue() <= record.getLevel().intValue()) {
+				if (isUtf8()) {
+					ByteBuffer buffer = bytes.get();
+					buffer.clear();
+					this.publish(append(record, buffer));
+				} else {
+					StringBuilder text = chars.get();
+					text.setLength(0);
+					format(record, text);
+					this.publish(text.toString());
+					release(text);
+				}
 			}
-			this.publish(this.formatter.format(record));			
-			record.onProcessed(this);
 		} catch (Throwable t) {
 			t.printStackTrace();
+		} finally {
+			//done with it whether written, filtered or failed; otherwise it never returns to the pool.
+			record.onProcessed(this);
 		}
 	}
 	
@@ -78,26 +126,144 @@ public abstract class AbstractOutputStreamHandler implements IOutputStreamHandle
 			e.printStackTrace();
 		}
 	}
+
+	/**
+	 * write the bytes up to the buffer's position to the stream.
+	 * @param buffer
+	 */
+	protected void publish(ByteBuffer buffer) {
+		try {
+			this.getOutputStream().write(buffer.array(), buffer.arrayOffset(), buffer.position());
+		} catch (Throwable e) {
+			e.printStackTrace();
+		}
+		if (buffer.capacity() > MAX_KEPT_BYTE_BUFFER) {
+			bytes.remove();
+		}
+	}
+
+	private boolean isUtf8() {
+		return UTF8.equals(encoding);
+	}
+
+	/**
+	 * Format the record once, then encode it into the buffer, writing out what is already there or
+	 * growing the buffer if it does not fit. Formatting again would repeat its side effects, e.g.
+	 * noting a stack trace as written before it was.
+	 * @return the buffer holding the record; a new one if it had to grow.
+	 */
+	private ByteBuffer append(ILogRecord record, ByteBuffer buffer) {
+		StringBuilder text = chars.get();
+		text.setLength(0);
+		format(record, text);
+		while (!Utf8.encode(text, buffer)) {
+			if (buffer.position() > 0) {
+				this.publish(buffer);
+				buffer.clear();
+			} else {
+				buffer = ByteBuffer.allocate(buffer.capacity() * 2);
+				bytes.set(buffer);
+			}
+		}
+		release(text);
+		return buffer;
+	}
+
+	/**
+	 * Format with our own stack trace cache, if we have one, as the formatter may be shared.
+	 */
+	private void format(ILogRecord record, StringBuilder text) {
+		StackTraceCache cache = this.stackTraces;
+		if (cache != null && this.formatter instanceof AbstractFormatter) {
+			((AbstractFormatter)this.formatter).format(record, text, cache);
+		} else {
+			this.formatter.format(record, text);
+		}
+	}
+
+	private void release(StringBuilder text) {
+		if (text.capacity() > MAX_KEPT_BYTE_BUFFER) {
+			chars.remove();
+		}
+	}
 	
 	@Override
 	public void setFormatter(IFormatter f) {
 		this.formatter = f;
 	}
 
+	/**
+	 * Write each distinct stack trace once, then refer to it by id, remembering up to this many.
+	 * @param size entries, 0 to write every trace in full.
+	 */
+	public void setStackTraceCache(String size) {
+		int n = Integer.valueOf(size.trim());
+		this.stackTraces = n > 0 ? new StackTraceCache(n) : null;
+	}
+
+	public StackTraceCache getStackTraceCache() {
+		return stackTraces;
+	}
+
+	/**
+	 * Forget the stack traces written, e.g. on starting a new file, so each file has them in full.
+	 */
+	protected void clearStackTraceCache() {
+		StackTraceCache cache = this.stackTraces;
+		if (cache != null) {
+			cache.clear();
+		}
+	}
+
 	@Override
 	public void setLevel(Level l) {
 		this.level = l;
 	}
 
+	@Override
+	public boolean isEnabled(Level l) {
+		return this.level.intValue() <= l.intValue();
+	}
+
 	@Override
 	public void publish(List<ILogRecord> batch) {
+		if (isUtf8()) {
+			ByteBuffer buffer = bytes.get();
+			buffer.clear();
+			for (ILogRecord record:batch) {
+				if (record == null) {
+					continue;
+				}
+				try {
+					if (this.level.intValue() <= record.getLevel().intValue()) {
+						buffer = append(record, buffer);
+					}
+				} catch (Throwable t) {
+					t.printStackTrace();
+				} finally {
+					//as for a single record; one bad record must not keep the rest from the pool.
+					record.onProcessed(this);
+				}
+			}
+			this.publish(buffer);
+			return;
+		}
 		StringBuilder buffer = new StringBuilder();
 		for (ILogRecord record:batch) {
-			if (record == null || this.level.intValue() > record.getLevel().intValue()) {
-			} else {
-				buffer.append(this.formatter.format(record));
+			if (record == null) {
+				continue;
+			}
+			int mark = buffer.length();
+			try {
+				if (this.level.intValue() <= record.getLevel().intValue()) {
+					format(record, buffer);
+				}
+			} catch (Throwable t) {
+				buffer.setLength(mark);
+				t.printStackTrace();
+			} finally {
+				record.onProcessed(this); //should be fine to free this now - we have taken the data already.
 			}
-			record.onProcessed(this); //should be fine to free this now - we have taken the data already.
 		}
 		this.publish(buffer.toString());
 	}
@@ -0,0 +1,97 @@
+package com.oaktree.core.logging.handlers;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Back off in stages while there is nothing to flush: spin for a while, then yield, then park for
+ * periods that double each time up to a maximum. Any processed batch resets to spinning, so during a
+ * burst the processor is never asleep, while a quiet handler costs next to no CPU.
+ *
+ * Logging threads call signal once they have queued a record which unparks the processor if it is
+ * parked. A signal racing with the processor going to sleep may be missed, in which case the record is
+ * picked up when the current park times out; hence the cap on the park time.
+ *
+ * @author Oak Tree Designs Ltd
+ *
+ */
+public class AdaptiveFlushPolicy implements IBackgroundFlushPolicy {
+
+	private final static int DEFAULT_SPINS = 1000;
+	private final static int DEFAULT_YIELDS = 100;
+	private final static long DEFAULT_MIN_PARK_NANOS = 1000;
+	private final static long DEFAULT_MAX_PARK_NANOS = 1000000;
+
+	private final int spins;
+	private final int yields;
+	private final long minParkNanos;
+	private final long maxParkNanos;
+
+	/**
+	 * Idle calls since the last batch. Processor thread only.
+	 */
+	private int idle = 0;
+	/**
+	 * Next park time. Processor thread only.
+	 */
+	private long parkNanos;
+
+	/**
+	 * The processor thread while it is parked, otherwise null.
+	 */
+	private volatile Thread parked;
+
+	public AdaptiveFlushPolicy() {
+		this(DEFAULT_SPINS, DEFAULT_YIELDS, DEFAULT_MIN_PARK_NANOS, DEFAULT_MAX_PARK_NANOS);
+	}
+
+	/**
+	 * @param spins number of idle calls that return straight away
+	 * @param yields number of idle calls after that which yield
+	 * @param minParkNanos first park time
+	 * @param maxParkNanos longest park time
+	 */
+	public AdaptiveFlushPolicy(int spins, int yields, long minParkNanos, long maxParkNanos) {
+		if (spins < 0 || yields < 0 || minParkNanos <= 0 || maxParkNanos < minParkNanos) {
+			throw new IllegalArgumentException("Invalid adaptive flush policy settings");
+		}
+		this.spins = spins;
+		this.yields = yields;
+		this.minParkNanos = minParkNanos;
+		this.maxParkNanos = maxParkNanos;
+		this.parkNanos = minParkNanos;
+	}
+
+	@Override
+	public void onBatchProcessed() {
+		idle = 0;
+		parkNanos = minParkNanos;
+	}
+
+	@Override
+	public void onIdle() {
+		if (idle < spins) {
+			idle++;
+		} else if (idle < spins + yields) {
+			idle++;
+			Thread.yield();
+		} else {
+			parked = Thread.currentThread();
+			LockSupport.parkNanos(this, parkNanos);
+			parked = null;
+			parkNanos = Math.min(parkNanos << 1, maxParkNanos);
+		}
+	}
+
+	@Override
+	public void signal() {
+		Thread t = parked;
+		if (t != null) {
+			LockSupport.unpark(t);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "ADAPTIVE spins: " + spins + " yields: " + yields + " park: " + minParkNanos + "-" + maxParkNanos + "ns";
+	}
+}
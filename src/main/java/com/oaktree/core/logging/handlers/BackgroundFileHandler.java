@@ -1,5 +1,7 @@
 package com.oaktree.core.logging.handlers;
 
+import com.oaktree.core.logging.formatters.StackTraceCache;
+
 /**
  * A handler that takes messages and runs the serialising to the real handler in a background thread.
  * 
@@ -22,4 +24,37 @@ public class BackgroundFileHandler extends AbstractBackgroundHandler implements
 		((IFileLoggingHandler)this.handler).setFilename(filename);
 	}
 
+	public void setRollingType(String rollingType) {
+		((FileHandler)this.handler).setRollingType(rollingType);
+	}
+
+	public void setRollDetail(String rollDetail) {
+		((FileHandler)this.handler).setRollDetail(rollDetail);
+	}
+
+	public void setStackTraceCache(String size) {
+		((FileHandler)this.handler).setStackTraceCache(size);
+	}
+
+	/**
+	 * Lanes after the first write to their own file, named as ours with the lane number appended, and
+	 * roll and remember stack traces as ours does, each with a cache of its own.
+	 */
+	@Override
+	protected ILoggingHandler makeLaneHandler(int lane) {
+		if (!(this.handler instanceof FileHandler)) {
+			return null;
+		}
+		FileHandler ours = (FileHandler)this.handler;
+		FileHandler h = new FileHandler();
+		h.setFilename(getFilename() + "." + lane);
+		h.setRollingType(ours.getRollingType().name());
+		h.setRollDetail(String.valueOf(ours.getRollDetail()));
+		StackTraceCache stackTraces = ours.getStackTraceCache();
+		if (stackTraces != null) {
+			h.setStackTraceCache(String.valueOf(stackTraces.getCapacity()));
+		}
+		return h;
+	}
+
 }
@@ -0,0 +1,37 @@
+package com.oaktree.core.logging.handlers;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.oaktree.core.logging.ILogRecord;
+import com.oaktree.core.logging.pool.RingBuffer;
+
+/**
+ * Never drop; the logging thread waits until the background thread frees a slot. Only records
+ * refused because the ring closed while waiting are counted as dropped.
+ * 
+ * @author Oak Tree Designs Ltd
+ *
+ */
+public class BlockingOverflowPolicy implements IOverflowPolicy {
+
+	private final AtomicLong dropped = new AtomicLong(0);
+
+	@Override
+	public long claim(RingBuffer<ILogRecord> ring, ILogRecord record) {
+		long seq = ring.claim();
+		if (seq < 0) {
+			dropped.incrementAndGet();
+		}
+		return seq;
+	}
+
+	@Override
+	public long getDropped() {
+		return dropped.get();
+	}
+
+	@Override
+	public String toString() {
+		return "BLOCK";
+	}
+}
@@ -10,6 +10,13 @@ package com.oaktree.core.logging.handlers;
 public class BusyFlushPolicy implements IBackgroundFlushPolicy {
     @Override
     public void onBatchProcessed() {
+    }
 
+    @Override
+    public void onIdle() {
+    }
+
+    @Override
+    public void signal() {
     }
 }
@@ -0,0 +1,55 @@
+package com.oaktree.core.logging.handlers;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.oaktree.core.logging.ILogRecord;
+import com.oaktree.core.logging.Level;
+import com.oaktree.core.logging.pool.RingBuffer;
+
+/**
+ * When full, drop records below a given level (WARN by default) but wait for space for
+ * anything at or above it, so warnings and errors are never lost.
+ * 
+ * @author Oak Tree Designs Ltd
+ *
+ */
+public class DropBelowLevelOverflowPolicy implements IOverflowPolicy {
+
+	private final AtomicLong dropped = new AtomicLong(0);
+	private final int level;
+
+	public DropBelowLevelOverflowPolicy() {
+		this(Level.WARN);
+	}
+
+	public DropBelowLevelOverflowPolicy(Level level) {
+		this.level = level.intValue();
+	}
+
+	@Override
+	public long claim(RingBuffer<ILogRecord> ring, ILogRecord record) {
+		long seq = ring.tryClaim();
+		if (seq >= 0) {
+			return seq;
+		}
+		if (record.getLevel().intValue() < level) {
+			dropped.incrementAndGet();
+			return -1;
+		}
+		seq = ring.claim();
+		if (seq < 0) {
+			dropped.incrementAndGet();
+		}
+		return seq;
+	}
+
+	@Override
+	public long getDropped() {
+		return dropped.get();
+	}
+
+	@Override
+	public String toString() {
+		return "DROP_BELOW_LEVEL(" + Level.fromInt(level) + ")";
+	}
+}
@@ -0,0 +1,36 @@
+package com.oaktree.core.logging.handlers;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.oaktree.core.logging.ILogRecord;
+import com.oaktree.core.logging.pool.RingBuffer;
+
+/**
+ * When full, drop the record being logged. The logging thread never waits.
+ * 
+ * @author Oak Tree Designs Ltd
+ *
+ */
+public class DropNewestOverflowPolicy implements IOverflowPolicy {
+
+	private final AtomicLong dropped = new AtomicLong(0);
+
+	@Override
+	public long claim(RingBuffer<ILogRecord> ring, ILogRecord record) {
+		long seq = ring.tryClaim();
+		if (seq < 0) {
+			dropped.incrementAndGet();
+		}
+		return seq;
+	}
+
+	@Override
+	public long getDropped() {
+		return dropped.get();
+	}
+
+	@Override
+	public String toString() {
+		return "DROP_NEWEST";
+	}
+}
@@ -0,0 +1,38 @@
+package com.oaktree.core.logging.handlers;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.oaktree.core.logging.ILogRecord;
+import com.oaktree.core.logging.pool.RingBuffer;
+
+/**
+ * When full, overwrite the oldest record that the background thread has not yet started on, so
+ * the most recent records are kept. The logging thread only waits if that slot is in the batch
+ * currently being written.
+ * 
+ * @author Oak Tree Designs Ltd
+ *
+ */
+public class DropOldestOverflowPolicy implements IOverflowPolicy {
+
+	private final AtomicLong dropped = new AtomicLong(0);
+
+	@Override
+	public long claim(RingBuffer<ILogRecord> ring, ILogRecord record) {
+		long seq = ring.claimOverwriting(dropped);
+		if (seq < 0) {
+			dropped.incrementAndGet();
+		}
+		return seq;
+	}
+
+	@Override
+	public long getDropped() {
+		return dropped.get();
+	}
+
+	@Override
+	public String toString() {
+		return "DROP_OLDEST";
+	}
+}
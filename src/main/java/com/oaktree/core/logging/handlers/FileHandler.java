@@ -84,6 +84,7 @@ public class FileHandler extends AbstractOutputStreamHandler implements IFileLog
 		 */
 		OutputStream o = this.stream;
 		this.stream = n;
+		clearStackTraceCache();
 		/*
 		 * shutdown the old one.
 		 */
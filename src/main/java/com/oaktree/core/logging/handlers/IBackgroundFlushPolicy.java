@@ -12,4 +12,14 @@ public interface IBackgroundFlushPolicy {
      *  perform action after flushing batch.
      */
     void onBatchProcessed();
+
+    /**
+     * perform action when there was nothing to flush e.g. spin, yield or sleep.
+     */
+    void onIdle();
+
+    /**
+     * Called by a logging thread after it has queued a record; lets a policy wake an idle processor.
+     */
+    void signal();
 }
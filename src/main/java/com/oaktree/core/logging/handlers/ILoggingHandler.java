@@ -33,6 +33,14 @@ public interface ILoggingHandler {
 	 */
 	void setLevel(Level l);
 
+	/**
+	 * Whether a record at the level would be handled rather than filtered out; lets loggers skip
+	 * building messages nobody will write.
+	 * @param l
+	 * @return true if records at the level are handled.
+	 */
+	boolean isEnabled(Level l);
+
 	/**
 	 * Publish a batch of log records.
 	 * @param batch
@@ -0,0 +1,27 @@
+package com.oaktree.core.logging.handlers;
+
+import com.oaktree.core.logging.ILogRecord;
+import com.oaktree.core.logging.pool.RingBuffer;
+
+/**
+ * What a background handler does with a new record when its ring of waiting records is full,
+ * e.g. wait for space, drop the new record or overwrite the oldest one.
+ * 
+ * @author Oak Tree Designs Ltd
+ *
+ */
+public interface IOverflowPolicy {
+	/**
+	 * Claim a slot in the ring for the record.
+	 * @param ring
+	 * @param record
+	 * @return claimed sequence, or -1 if the record is to be dropped, counted by the policy whether
+	 * the ring was full or closed.
+	 */
+	long claim(RingBuffer<ILogRecord> ring, ILogRecord record);
+
+	/**
+	 * @return number of records this policy has dropped.
+	 */
+	long getDropped();
+}
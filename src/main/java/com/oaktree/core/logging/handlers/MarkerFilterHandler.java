@@ -0,0 +1,109 @@
+package com.oaktree.core.logging.handlers;
+
+import java.util.List;
+
+import com.oaktree.core.logging.ILogRecord;
+import com.oaktree.core.logging.Level;
+import com.oaktree.core.logging.formatters.IFormatter;
+
+/**
+ * A handler passing records on to another by their markers; set up by the manager when a handler has
+ * a markers or excludeMarkers property e.g. AUDIT_FILE.markers=AUDIT to route audit records to their
+ * own file and FILE_HANDLER.excludeMarkers=AUDIT to keep them out of the main one. The test is an AND
+ * of the record's marker mask with masks made when configured. Records not passed on are freed.
+ *
+ * @author Oak Tree Designs Ltd
+ */
+public class MarkerFilterHandler implements ILoggingHandler {
+
+	private final ILoggingHandler handler;
+	/**
+	 * Records must have one of these markers; 0 for any record.
+	 */
+	private final long include;
+	/**
+	 * Records must have none of these markers.
+	 */
+	private final long exclude;
+
+	public MarkerFilterHandler(ILoggingHandler handler, long include, long exclude) {
+		if (handler == null) {
+			throw new IllegalArgumentException("Invalid handler. Must be not-null");
+		}
+		this.handler = handler;
+		this.include = include;
+		this.exclude = exclude;
+	}
+
+	/**
+	 * @param record
+	 * @return true if the record's markers pass the filter.
+	 */
+	public boolean accepts(ILogRecord record) {
+		long markers = record.getMarkers();
+		return (include == 0 || (markers & include) != 0) && (markers & exclude) == 0;
+	}
+
+	@Override
+	public void publish(ILogRecord record) {
+		if (record == null) {
+			return;
+		}
+		if (accepts(record)) {
+			handler.publish(record);
+		} else {
+			record.onProcessed(this);
+		}
+	}
+
+	@Override
+	public void publish(List<ILogRecord> batch) {
+		for (ILogRecord record:batch) {
+			publish(record);
+		}
+	}
+
+	@Override
+	public void setFormatter(IFormatter f) {
+		handler.setFormatter(f);
+	}
+
+	@Override
+	public void setLevel(Level l) {
+		handler.setLevel(l);
+	}
+
+	@Override
+	public boolean isEnabled(Level l) {
+		return handler.isEnabled(l);
+	}
+
+	@Override
+	public void start() {
+		handler.start();
+	}
+
+	@Override
+	public void stop() {
+		handler.stop();
+	}
+
+	@Override
+	public String getName() {
+		return handler.getName();
+	}
+
+	@Override
+	public void setName(String name) {
+		handler.setName(name);
+	}
+
+	public ILoggingHandler getHandler() {
+		return handler;
+	}
+
+	@Override
+	public String toString() {
+		return handler + " markers: " + Long.toHexString(include) + " excluding: " + Long.toHexString(exclude);
+	}
+}
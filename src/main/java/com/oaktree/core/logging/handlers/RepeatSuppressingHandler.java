@@ -0,0 +1,214 @@
+package com.oaktree.core.logging.handlers;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.oaktree.core.logging.ILogRecord;
+import com.oaktree.core.logging.ILogger;
+import com.oaktree.core.logging.Level;
+import com.oaktree.core.logging.LogRecord;
+import com.oaktree.core.logging.formatters.IFormatter;
+
+/**
+ * A handler in front of another that passes on the first of a run of identical messages and then,
+ * instead of the rest, a record saying how many times it was repeated. Set up by the manager when a
+ * handler has a repeatWindow property e.g. FILE_HANDLER.repeatWindow=1000.
+ *
+ * Messages are identical if they come from the same logger at the same level with the same message
+ * hash (of the template and arguments, so nothing is rendered to compare them). A run is summarised
+ * when a different message arrives, when it has gone on for longer than the window (and then starts
+ * again), or when the handler stops.
+ *
+ * Suppressed records are freed straight away. Publishing takes a lock, which every logging thread
+ * contends for unless this is inside a background handler: given a repeatWindow a background handler
+ * puts one around its delegate, where only its processor threads publish.
+ *
+ * @author Oak Tree Designs Ltd
+ */
+public class RepeatSuppressingHandler implements ILoggingHandler {
+
+	public final static long DEFAULT_WINDOW_MILLIS = 1000;
+
+	private final ILoggingHandler handler;
+	private final long windowMillis;
+
+	/**
+	 * The message in the current run.
+	 */
+	private ILogger lastLogger;
+	private Level lastLevel;
+	private long lastHash;
+	private int lastThreadId;
+	private String lastThreadName;
+	private long runStart;
+	private long repeats = 0;
+	private long suppressed = 0;
+	/**
+	 * Batch being passed on; reused.
+	 */
+	private final List<ILogRecord> kept = new ArrayList<ILogRecord>();
+
+	public RepeatSuppressingHandler(ILoggingHandler handler) {
+		this(handler, DEFAULT_WINDOW_MILLIS);
+	}
+
+	public RepeatSuppressingHandler(ILoggingHandler handler, long windowMillis) {
+		if (handler == null) {
+			throw new IllegalArgumentException("Invalid handler. Must be not-null");
+		}
+		if (windowMillis <= 0) {
+			throw new IllegalArgumentException("Invalid window. Must be positive");
+		}
+		this.handler = handler;
+		this.windowMillis = windowMillis;
+	}
+
+	@Override
+	public void publish(ILogRecord record) {
+		if (record == null) {
+			return;
+		}
+		ILogRecord summary;
+		synchronized (kept) {
+			if (isRepeat(record)) {
+				record.onProcessed(this);
+				return;
+			}
+			summary = startRun(record);
+		}
+		if (summary != null) {
+			handler.publish(summary);
+		}
+		handler.publish(record);
+	}
+
+	@Override
+	public void publish(List<ILogRecord> batch) {
+		synchronized (kept) {
+			for (ILogRecord record:batch) {
+				if (record == null) {
+					continue;
+				}
+				if (isRepeat(record)) {
+					record.onProcessed(this);
+					continue;
+				}
+				ILogRecord summary = startRun(record);
+				if (summary != null) {
+					kept.add(summary);
+				}
+				kept.add(record);
+			}
+			try {
+				if (!kept.isEmpty()) {
+					handler.publish(kept);
+				}
+			} finally {
+				kept.clear();
+			}
+		}
+	}
+
+	/**
+	 * Count the record if it repeats the current run within the window. Caller holds the lock.
+	 */
+	private boolean isRepeat(ILogRecord record) {
+		if (record.getLogger() != lastLogger || record.getLevel() != lastLevel || lastLevel == null
+				|| record.getMessageHash() != lastHash || record.getMillis() - runStart > windowMillis) {
+			return false;
+		}
+		repeats++;
+		suppressed++;
+		return true;
+	}
+
+	/**
+	 * Make the record the start of a new run. Caller holds the lock.
+	 * @return summary of the run it ends, if anything was suppressed.
+	 */
+	private ILogRecord startRun(ILogRecord record) {
+		ILogRecord summary = takeSummary(record.getMillis());
+		lastLogger = record.getLogger();
+		lastLevel = record.getLevel();
+		lastHash = record.getMessageHash();
+		lastThreadId = record.getThreadId();
+		lastThreadName = record.getThreadName();
+		runStart = record.getMillis();
+		return summary;
+	}
+
+	private ILogRecord takeSummary(long millis) {
+		if (repeats == 0) {
+			return null;
+		}
+		LogRecord summary = new LogRecord("Previous message repeated {} times", lastLevel, millis, lastThreadId, lastThreadName, null);
+		summary.addArgument(repeats);
+		repeats = 0;
+		return summary;
+	}
+
+	/**
+	 * @return number of records suppressed as repeats.
+	 */
+	public long getSuppressed() {
+		synchronized (kept) {
+			return suppressed;
+		}
+	}
+
+	public long getWindowMillis() {
+		return windowMillis;
+	}
+
+	public ILoggingHandler getHandler() {
+		return handler;
+	}
+
+	@Override
+	public void setFormatter(IFormatter f) {
+		handler.setFormatter(f);
+	}
+
+	@Override
+	public void setLevel(Level l) {
+		handler.setLevel(l);
+	}
+
+	@Override
+	public boolean isEnabled(Level l) {
+		return handler.isEnabled(l);
+	}
+
+	@Override
+	public void start() {
+		handler.start();
+	}
+
+	@Override
+	public void stop() {
+		ILogRecord summary;
+		synchronized (kept) {
+			summary = takeSummary(System.currentTimeMillis());
+			lastLevel = null;
+		}
+		if (summary != null) {
+			handler.publish(summary);
+		}
+		handler.stop();
+	}
+
+	@Override
+	public String getName() {
+		return handler.getName();
+	}
+
+	@Override
+	public void setName(String name) {
+		handler.setName(name);
+	}
+
+	@Override
+	public String toString() {
+		return handler + " repeatWindow: " + windowMillis + "ms";
+	}
+}
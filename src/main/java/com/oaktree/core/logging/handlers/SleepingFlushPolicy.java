@@ -15,6 +15,14 @@ public class SleepingFlushPolicy implements IBackgroundFlushPolicy {
     }
     @Override
     public void onBatchProcessed() {
+    }
+
+    @Override
+    public void signal() {
+    }
+
+    @Override
+    public void onIdle() {
         try {
             Thread.sleep(sleep);
         } catch (Exception e) {
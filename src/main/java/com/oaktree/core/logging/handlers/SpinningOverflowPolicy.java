@@ -0,0 +1,52 @@
+package com.oaktree.core.logging.handlers;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.oaktree.core.logging.ILogRecord;
+import com.oaktree.core.logging.pool.RingBuffer;
+
+/**
+ * When full, spin for up to a timeout waiting for a free slot and drop the record if none
+ * appears. Bounds the time a logging thread can lose to a slow disk.
+ * 
+ * @author Oak Tree Designs Ltd
+ *
+ */
+public class SpinningOverflowPolicy implements IOverflowPolicy {
+
+	private final AtomicLong dropped = new AtomicLong(0);
+	/**
+	 * Longest time to spin, in nanos.
+	 */
+	private final long timeout;
+
+	public SpinningOverflowPolicy(long timeoutNanos) {
+		this.timeout = timeoutNanos;
+	}
+
+	@Override
+	public long claim(RingBuffer<ILogRecord> ring, ILogRecord record) {
+		long seq = ring.tryClaim();
+		if (seq >= 0) {
+			return seq;
+		}
+		long deadline = System.nanoTime() + timeout;
+		while ((seq = ring.tryClaim()) < 0) {
+			if (System.nanoTime() - deadline > 0) {
+				dropped.incrementAndGet();
+				return -1;
+			}
+		}
+		return seq;
+	}
+
+	@Override
+	public long getDropped() {
+		return dropped.get();
+	}
+
+	@Override
+	public String toString() {
+		return "SPIN(" + timeout + "ns)";
+	}
+}
@@ -0,0 +1,115 @@
+package com.oaktree.core.logging.handlers;
+
+import java.util.List;
+
+import com.oaktree.core.logging.ILogRecord;
+import com.oaktree.core.logging.Level;
+import com.oaktree.core.logging.LogRecord;
+import com.oaktree.core.logging.Throttle;
+import com.oaktree.core.logging.formatters.IFormatter;
+
+/**
+ * A handler passing records on to another only as its throttle allows; set up by the manager when a
+ * handler has a rateLimit or sample property e.g. FILE_HANDLER.rateLimit=1000/s. Suppressed records
+ * are freed straight away and their number written through the handler every summary period.
+ *
+ * @author Oak Tree Designs Ltd
+ */
+public class ThrottledHandler implements ILoggingHandler {
+
+	private final ILoggingHandler handler;
+	private final Throttle throttle;
+
+	public ThrottledHandler(ILoggingHandler handler, Throttle throttle) {
+		if (handler == null || throttle == null) {
+			throw new IllegalArgumentException("Invalid handler or throttle. Must be not-null");
+		}
+		this.handler = handler;
+		this.throttle = throttle;
+	}
+
+	@Override
+	public void publish(ILogRecord record) {
+		if (record == null) {
+			return;
+		}
+		if (!throttle.allow()) {
+			record.onProcessed(this);
+			return;
+		}
+		Throttle.Summary suppressed = throttle.takeSummary();
+		if (suppressed != null) {
+			handler.publish(summary(suppressed));
+		}
+		handler.publish(record);
+	}
+
+	private ILogRecord summary(Throttle.Summary suppressed) {
+		Thread t = Thread.currentThread();
+		LogRecord summary = new LogRecord("Handler {} suppressed {} records in the last {}ms", Level.WARN,
+				System.currentTimeMillis(), t.getId(), t.getName(), null);
+		summary.addArgument(getName());
+		summary.addArgument(suppressed.getSuppressed());
+		summary.addArgument(suppressed.getMillis());
+		return summary;
+	}
+
+	@Override
+	public void publish(List<ILogRecord> batch) {
+		for (ILogRecord record:batch) {
+			publish(record);
+		}
+	}
+
+	@Override
+	public void setFormatter(IFormatter f) {
+		handler.setFormatter(f);
+	}
+
+	@Override
+	public void setLevel(Level l) {
+		handler.setLevel(l);
+	}
+
+	@Override
+	public boolean isEnabled(Level l) {
+		return handler.isEnabled(l);
+	}
+
+	@Override
+	public void start() {
+		handler.start();
+	}
+
+	@Override
+	public void stop() {
+		Throttle.Summary suppressed = throttle.takeUnreported();
+		if (suppressed != null) {
+			handler.publish(summary(suppressed));
+		}
+		handler.stop();
+	}
+
+	@Override
+	public String getName() {
+		return handler.getName();
+	}
+
+	@Override
+	public void setName(String name) {
+		handler.setName(name);
+	}
+
+	public ILoggingHandler getHandler() {
+		return handler;
+	}
+
+	public Throttle getThrottle() {
+		return throttle;
+	}
+
+	@Override
+	public String toString() {
+		return handler + " " + throttle;
+	}
+}
@@ -10,6 +10,14 @@ package com.oaktree.core.logging.handlers;
 public class YieldingFlushPolicy implements IBackgroundFlushPolicy{
     @Override
     public void onBatchProcessed() {
+    }
+
+    @Override
+    public void onIdle() {
         Thread.yield();
     }
+
+    @Override
+    public void signal() {
+    }
 }
@@ -0,0 +1,179 @@
+package com.oaktree.core.logging.markers;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.slf4j.Marker;
+
+import com.oaktree.core.logging.Markers;
+
+/**
+ * The slf4j Marker for oaktree logging. Keeps its mask of marker bits, so that loggers testing a marker
+ * do not look up its name or walk its references each time. Any marker adding or removing a reference
+ * makes every kept mask stale, as a change may be to a marker referenced from elsewhere; masks are then
+ * made again on next use. References are rarely changed once set up.
+ *
+ * @author Oak Tree Designs Ltd
+ */
+public class OaktreeMarker implements Marker {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Incremented whenever any marker's references change.
+	 */
+	private static volatile int changes = 0;
+
+	/**
+	 * A mask and the number of changes it was made at.
+	 */
+	private static final class Mask {
+		private final int changes;
+		private final long bits;
+		Mask(int changes, long bits) {
+			this.changes = changes;
+			this.bits = bits;
+		}
+	}
+
+	private final String name;
+	private final List<Marker> references = new CopyOnWriteArrayList<Marker>();
+	private transient volatile Mask mask;
+
+	public OaktreeMarker(String name) {
+		if (name == null) {
+			throw new IllegalArgumentException("A marker name cannot be null");
+		}
+		this.name = name;
+	}
+
+	/**
+	 * @return the bits of this marker and of any markers it references.
+	 */
+	public long getMask() {
+		Mask m = this.mask;
+		int now = changes;
+		if (m == null || m.changes != now) {
+			long bits = Markers.bitOf(name);
+			for (Marker reference:references) {
+				bits |= Markers.maskOf(reference);
+			}
+			m = new Mask(now, bits);
+			this.mask = m;
+		}
+		return m.bits;
+	}
+
+	private static synchronized void changed() {
+		changes++;
+	}
+
+	@Override
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public void add(Marker reference) {
+		if (reference == null) {
+			throw new IllegalArgumentException("A null value cannot be added to a Marker as reference.");
+		}
+		//no duplicates, and no cycles.
+		if (this.contains(reference) || reference.contains(this)) {
+			return;
+		}
+		references.add(reference);
+		changed();
+	}
+
+	@Override
+	public boolean remove(Marker reference) {
+		boolean removed = references.remove(reference);
+		if (removed) {
+			changed();
+		}
+		return removed;
+	}
+
+	@Override
+	@Deprecated
+	public boolean hasChildren() {
+		return hasReferences();
+	}
+
+	@Override
+	public boolean hasReferences() {
+		return !references.isEmpty();
+	}
+
+	@Override
+	public Iterator<Marker> iterator() {
+		return references.iterator();
+	}
+
+	@Override
+	public boolean contains(Marker other) {
+		if (other == null) {
+			throw new IllegalArgumentException("Other cannot be null");
+		}
+		if (this.equals(other)) {
+			return true;
+		}
+		for (Marker reference:references) {
+			if (reference.contains(other)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public boolean contains(String name) {
+		if (name == null) {
+			throw new IllegalArgumentException("Other cannot be null");
+		}
+		if (this.name.equals(name)) {
+			return true;
+		}
+		for (Marker reference:references) {
+			if (reference.contains(name)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof Marker)) {
+			return false;
+		}
+		return name.equals(((Marker)obj).getName());
+	}
+
+	@Override
+	public int hashCode() {
+		return name.hashCode();
+	}
+
+	@Override
+	public String toString() {
+		if (references.isEmpty()) {
+			return name;
+		}
+		StringBuilder buffer = new StringBuilder(name).append(" [ ");
+		boolean first = true;
+		for (Marker reference:references) {
+			if (!first) {
+				buffer.append(", ");
+			}
+			buffer.append(reference.getName());
+			first = false;
+		}
+		return buffer.append(" ]").toString();
+	}
+}
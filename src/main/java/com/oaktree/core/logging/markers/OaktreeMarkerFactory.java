@@ -0,0 +1,47 @@
+package com.oaktree.core.logging.markers;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.IMarkerFactory;
+import org.slf4j.Marker;
+
+/**
+ * The slf4j marker factory for oaktree logging; makes OaktreeMarkers, which keep their own masks.
+ *
+ * @author Oak Tree Designs Ltd
+ */
+public class OaktreeMarkerFactory implements IMarkerFactory {
+
+	private final ConcurrentHashMap<String, Marker> markers = new ConcurrentHashMap<String, Marker>();
+
+	@Override
+	public Marker getMarker(String name) {
+		if (name == null) {
+			throw new IllegalArgumentException("Marker name cannot be null");
+		}
+		Marker marker = markers.get(name);
+		if (marker == null) {
+			marker = new OaktreeMarker(name);
+			Marker old = markers.putIfAbsent(name, marker);
+			if (old != null) {
+				marker = old;
+			}
+		}
+		return marker;
+	}
+
+	@Override
+	public boolean exists(String name) {
+		return name != null && markers.containsKey(name);
+	}
+
+	@Override
+	public boolean detachMarker(String name) {
+		return name != null && markers.remove(name) != null;
+	}
+
+	@Override
+	public Marker getDetachedMarker(String name) {
+		return new OaktreeMarker(name);
+	}
+}
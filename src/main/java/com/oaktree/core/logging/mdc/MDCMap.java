@@ -0,0 +1,165 @@
+package com.oaktree.core.logging.mdc;
+
+/**
+ * A String to String map for the MDC of one thread. Keys and values live in two arrays, found by
+ * open addressing (linear probing) from the key's hash, so put, get and remove make no entry
+ * objects and a map cleared and filled again each request allocates nothing once it has grown
+ * to its working size.
+ *
+ * Not thread safe; each thread has its own. Entries are read through the slots so a record can
+ * copy them without an iterator.
+ *
+ * @author Oak Tree Designs Ltd
+ */
+public class MDCMap {
+
+	private final static int DEFAULT_CAPACITY = 16;
+
+	private String[] keys;
+	private String[] values;
+	private int size = 0;
+
+	public MDCMap() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * @param capacity rounded up to a power of 2.
+	 */
+	public MDCMap(int capacity) {
+		int c = 4;
+		while (c < capacity) {
+			c <<= 1;
+		}
+		keys = new String[c];
+		values = new String[c];
+	}
+
+	private static int hash(String key, int mask) {
+		int h = key.hashCode();
+		return (h ^ (h >>> 16)) & mask;
+	}
+
+	private int find(String key) {
+		int mask = keys.length - 1;
+		for (int i = hash(key, mask); ; i = (i + 1) & mask) {
+			String k = keys[i];
+			if (k == null) {
+				return -1;
+			}
+			if (k == key || k.equals(key)) {
+				return i;
+			}
+		}
+	}
+
+	public void put(String key, String value) {
+		if (key == null) {
+			throw new IllegalArgumentException("Invalid key. Must be not-null");
+		}
+		int mask = keys.length - 1;
+		int i = hash(key, mask);
+		for (;;) {
+			String k = keys[i];
+			if (k == null) {
+				break;
+			}
+			if (k == key || k.equals(key)) {
+				values[i] = value;
+				return;
+			}
+			i = (i + 1) & mask;
+		}
+		keys[i] = key;
+		values[i] = value;
+		//keep at most half full so probes stay short.
+		if (++size * 2 > keys.length) {
+			grow();
+		}
+	}
+
+	public String get(String key) {
+		if (key == null) {
+			return null;
+		}
+		int i = find(key);
+		return i < 0 ? null : values[i];
+	}
+
+	public void remove(String key) {
+		if (key == null) {
+			return;
+		}
+		int i = find(key);
+		if (i < 0) {
+			return;
+		}
+		int mask = keys.length - 1;
+		keys[i] = null;
+		values[i] = null;
+		size--;
+		//shift back later entries of the run that could have been placed at or before the gap.
+		int gap = i;
+		for (int j = (i + 1) & mask; keys[j] != null; j = (j + 1) & mask) {
+			int home = hash(keys[j], mask);
+			if (((j - home) & mask) >= ((j - gap) & mask)) {
+				keys[gap] = keys[j];
+				values[gap] = values[j];
+				keys[j] = null;
+				values[j] = null;
+				gap = j;
+			}
+		}
+	}
+
+	public void clear() {
+		if (size == 0) {
+			return;
+		}
+		for (int i = 0; i < keys.length; i++) {
+			keys[i] = null;
+			values[i] = null;
+		}
+		size = 0;
+	}
+
+	private void grow() {
+		String[] oldKeys = keys;
+		String[] oldValues = values;
+		keys = new String[oldKeys.length * 2];
+		values = new String[oldValues.length * 2];
+		size = 0;
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != null) {
+				put(oldKeys[i], oldValues[i]);
+			}
+		}
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return number of slots; entries are the slots with a non-null key.
+	 */
+	public int getSlots() {
+		return keys.length;
+	}
+
+	/**
+	 * @param slot
+	 * @return key in the slot, or null if it is empty.
+	 */
+	public String getKey(int slot) {
+		return keys[slot];
+	}
+
+	/**
+	 * @param slot
+	 * @return value in the slot.
+	 */
+	public String getValue(int slot) {
+		return values[slot];
+	}
+}
@@ -0,0 +1,90 @@
+package com.oaktree.core.logging.mdc;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.slf4j.spi.MDCAdapter;
+
+/**
+ * The slf4j MDC for oaktree logging: a reusable MDCMap per thread. Loggers copy the calling
+ * thread's entries into each record as it is made, so handlers on other threads see the MDC as it
+ * was when the record was logged.
+ *
+ * Until something is first put in any thread's MDC loggers skip the copy altogether.
+ *
+ * @author Oak Tree Designs Ltd
+ */
+public class OaktreeMDCAdapter implements MDCAdapter {
+
+	private final static ThreadLocal<MDCMap> maps = new ThreadLocal<MDCMap>() {
+		@Override
+		protected MDCMap initialValue() {
+			return new MDCMap();
+		}
+	};
+
+	/**
+	 * Whether the MDC has been used at all.
+	 */
+	private static volatile boolean used = false;
+
+	/**
+	 * @return the calling thread's MDC, or null if the MDC has never been used.
+	 */
+	public static MDCMap getMap() {
+		return used ? maps.get() : null;
+	}
+
+	@Override
+	public void put(String key, String val) {
+		if (!used) {
+			used = true;
+		}
+		maps.get().put(key, val);
+	}
+
+	@Override
+	public String get(String key) {
+		return used ? maps.get().get(key) : null;
+	}
+
+	@Override
+	public void remove(String key) {
+		if (used) {
+			maps.get().remove(key);
+		}
+	}
+
+	@Override
+	public void clear() {
+		if (used) {
+			maps.get().clear();
+		}
+	}
+
+	@Override
+	@SuppressWarnings("rawtypes")
+	public Map getCopyOfContextMap() {
+		MDCMap map = getMap();
+		if (map == null || map.size() == 0) {
+			return null;
+		}
+		Map<String, String> copy = new HashMap<String, String>();
+		for (int i = 0; i < map.getSlots(); i++) {
+			if (map.getKey(i) != null) {
+				copy.put(map.getKey(i), map.getValue(i));
+			}
+		}
+		return copy;
+	}
+
+	@Override
+	@SuppressWarnings("rawtypes")
+	public void setContextMap(Map contextMap) {
+		clear();
+		for (Object o:contextMap.entrySet()) {
+			Map.Entry e = (Map.Entry)o;
+			put((String)e.getKey(), (String)e.getValue());
+		}
+	}
+}
@@ -47,7 +47,7 @@ public class ExpandPoolWaitPolicy<T> implements IWaitPolicy<T> {
 	}
 	
 	@Override
-	public T wait(SimplePool<T> pool) {
+	public T wait(IPool<T> pool) {
 		for (int i = this.increases ; i < maxIncreases;i++) {
 			int inc = (int)(pool.getCapacity()*((100d+pctIncrease)/100d));
 			if (inc <= 0 || inc == pool.getCapacity()) {
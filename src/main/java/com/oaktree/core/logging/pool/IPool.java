@@ -5,4 +5,13 @@ public interface IPool<T> {
 	public void free(T record);
 	public int getCapacity();
 	public void setCapacity(int capacity);
+	/**
+	 * Get a free pooled object without invoking any wait policy.
+	 * @return free object, or null if none found.
+	 */
+	public T getFreeObject();
+	/**
+	 * @return the factory the pool makes its objects with.
+	 */
+	public IObjectFactory<T> getObjectFactory();
 }
@@ -13,5 +13,5 @@ public interface IWaitPolicy<T> {
 	 * @param pool
 	 * @return
 	 */
-	public T wait(SimplePool<T> pool);
+	public T wait(IPool<T> pool);
 }
@@ -0,0 +1,142 @@
+package com.oaktree.core.logging.pool;
+
+/**
+ * A pool decorator giving each thread a small magazine of free objects in front of a shared pool.
+ * Gets and frees use the calling thread's magazine; only when it is empty is it refilled from the shared
+ * pool, and only when it is full is half of it spilled back, so most get/free pairs on a thread touch no
+ * memory shared with other threads.
+ *
+ * Objects freed on another thread than got them simply move to that thread's magazine. Objects in the
+ * magazine of a thread that dies are lost to the pool, so this suits pools used by long lived threads.
+ * Size the shared pool for the magazines as well: each thread may hold up to magazineSize objects.
+ * Unlike StackPool a double free is not caught here; use a TrackingPool to find those.
+ *
+ * @author Oak Tree Designs Ltd
+ *
+ * @param <T>
+ */
+public class MagazinePool<T> implements IPool<T> {
+
+	public final static int DEFAULT_MAGAZINE_SIZE = 8;
+	/**
+	 * System property giving the magazine size for the logger record pools; unset or 0 for none.
+	 */
+	public final static String MAGAZINE_PROPERTY = "oaktree.logging.pool.magazine";
+
+	private final IPool<T> pool;
+	private final int magazineSize;
+
+	/**
+	 * Free objects held by one thread.
+	 */
+	private static class Magazine {
+		private final Object[] objects;
+		private int size = 0;
+		Magazine(int capacity) {
+			objects = new Object[capacity];
+		}
+	}
+
+	private final ThreadLocal<Magazine> magazines = new ThreadLocal<Magazine>() {
+		@Override
+		protected Magazine initialValue() {
+			return new Magazine(magazineSize);
+		}
+	};
+
+	public MagazinePool(IPool<T> pool) {
+		this(pool, DEFAULT_MAGAZINE_SIZE);
+	}
+
+	public MagazinePool(IPool<T> pool, int magazineSize) {
+		if (pool == null) {
+			throw new IllegalArgumentException("Invalid pool. Must be not-null");
+		}
+		if (magazineSize <= 1) {
+			throw new IllegalArgumentException("Invalid magazine size. Must be > 1");
+		}
+		this.pool = pool;
+		this.magazineSize = magazineSize;
+	}
+
+	@Override
+	public T get() {
+		T obj = getFreeObject();
+		if (obj != null) {
+			return obj;
+		}
+		//shared pool is empty too; let its wait policy decide.
+		return pool.get();
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public T getFreeObject() {
+		Magazine m = magazines.get();
+		if (m.size == 0) {
+			refill(m);
+			if (m.size == 0) {
+				return null;
+			}
+		}
+		T obj = (T)m.objects[--m.size];
+		m.objects[m.size] = null;
+		return obj;
+	}
+
+	/**
+	 * Take up to half a magazine from the shared pool.
+	 * @param m
+	 */
+	private void refill(Magazine m) {
+		int target = magazineSize / 2;
+		while (m.size < target) {
+			T obj = pool.getFreeObject();
+			if (obj == null) {
+				return;
+			}
+			m.objects[m.size++] = obj;
+		}
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public void free(T obj) {
+		if (obj == null) {
+			return;
+		}
+		Magazine m = magazines.get();
+		if (m.size == magazineSize) {
+			//spill the older half back to the shared pool.
+			int spill = magazineSize / 2;
+			for (int i = 0; i < spill; i++) {
+				pool.free((T)m.objects[i]);
+			}
+			System.arraycopy(m.objects, spill, m.objects, 0, m.size - spill);
+			for (int i = m.size - spill; i < m.size; i++) {
+				m.objects[i] = null;
+			}
+			m.size -= spill;
+		}
+		m.objects[m.size++] = obj;
+	}
+
+	@Override
+	public int getCapacity() {
+		return pool.getCapacity();
+	}
+
+	@Override
+	public void setCapacity(int capacity) {
+		pool.setCapacity(capacity);
+	}
+
+	@Override
+	public IObjectFactory<T> getObjectFactory() {
+		return pool.getObjectFactory();
+	}
+
+	public int getMagazineSize() {
+		return magazineSize;
+	}
+}
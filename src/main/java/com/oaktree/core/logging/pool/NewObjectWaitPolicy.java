@@ -12,7 +12,7 @@ package com.oaktree.core.logging.pool;
 public class NewObjectWaitPolicy<T> implements IWaitPolicy<T> {
 
 	@Override
-	public T wait(SimplePool<T> pool) {
+	public T wait(IPool<T> pool) {
 		return pool.getObjectFactory().make();
 	}
 
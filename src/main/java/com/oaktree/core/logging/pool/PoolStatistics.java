@@ -0,0 +1,145 @@
+package com.oaktree.core.logging.pool;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Counts what a pool is doing so it can be sized for no allocation: if there are misses, or the wait
+ * policy is being invoked, the pool is too small; the high water mark says how big it needs to be.
+ *
+ * <li>hits: objects handed out from the pool, including any found by the wait policy</li>
+ * <li>misses: gets that found no free object</li>
+ * <li>wait policy invocations: misses handed to the wait policy e.g. to make a new unpooled object</li>
+ * <li>expansions: times the pool capacity was increased</li>
+ * <li>in use: pooled objects handed out and not yet freed</li>
+ *
+ * Register makes the statistics visible in jmx as Logging:type=Oaktree,name=Pool.<name>.
+ *
+ * @author Oak Tree Designs Ltd
+ *
+ */
+public class PoolStatistics implements PoolStatisticsMBean {
+
+	private final String name;
+	private final IPool<?> pool;
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong frees = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong waits = new AtomicLong();
+	private final AtomicLong expansions = new AtomicLong();
+	/**
+	 * Racy maximum; good enough for a statistic and keeps the get path to one atomic.
+	 */
+	private volatile long highWater = 0;
+
+	public PoolStatistics(String name, IPool<?> pool) {
+		this.name = name;
+		this.pool = pool;
+	}
+
+	void onHit() {
+		long inUse = hits.incrementAndGet() - frees.get();
+		if (inUse > highWater) {
+			highWater = inUse;
+		}
+	}
+
+	void onFree() {
+		frees.incrementAndGet();
+	}
+
+	void onMiss(boolean waiting) {
+		misses.incrementAndGet();
+		if (waiting) {
+			waits.incrementAndGet();
+		}
+	}
+
+	void onExpand() {
+		expansions.incrementAndGet();
+	}
+
+	/**
+	 * Make visible in jmx, replacing any statistics already registered under our name.
+	 */
+	public void register() {
+		MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+		try {
+			ObjectName on = new ObjectName("Logging" + ":type="
+					+ "Oaktree" + ",name=" + ObjectName.quote("Pool." + name));
+			if (mbs.isRegistered(on)) {
+				mbs.unregisterMBean(on);
+			}
+			mbs.registerMBean(this, on);
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public int getCapacity() {
+		return pool.getCapacity();
+	}
+
+	@Override
+	public long getInUse() {
+		return Math.max(0, hits.get() - frees.get());
+	}
+
+	@Override
+	public long getHighWater() {
+		return highWater;
+	}
+
+	@Override
+	public long getHits() {
+		return hits.get();
+	}
+
+	@Override
+	public long getMisses() {
+		return misses.get();
+	}
+
+	@Override
+	public long getWaitPolicyInvocations() {
+		return waits.get();
+	}
+
+	@Override
+	public long getExpansions() {
+		return expansions.get();
+	}
+
+	@Override
+	public long getFrees() {
+		return frees.get();
+	}
+
+	/**
+	 * Zero the counters; objects in use are still counted as such.
+	 */
+	@Override
+	public void reset() {
+		long inUse = getInUse();
+		frees.set(0);
+		hits.set(inUse);
+		misses.set(0);
+		waits.set(0);
+		expansions.set(0);
+		highWater = inUse;
+	}
+
+	@Override
+	public String toString() {
+		return name + " capacity: " + getCapacity() + " inuse: " + getInUse() + " highwater: " + highWater + " hits: " + hits.get()
+			+ " misses: " + misses.get() + " waits: " + waits.get() + " expansions: " + expansions.get();
+	}
+}
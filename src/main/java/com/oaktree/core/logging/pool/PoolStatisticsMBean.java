@@ -0,0 +1,18 @@
+package com.oaktree.core.logging.pool;
+
+/**
+ * Exposed statistics of an object pool in jmx.
+ * @author Oak Tree Designs Ltd
+ *
+ */
+public interface PoolStatisticsMBean {
+	int getCapacity();
+	long getInUse();
+	long getHighWater();
+	long getHits();
+	long getMisses();
+	long getWaitPolicyInvocations();
+	long getExpansions();
+	long getFrees();
+	void reset();
+}
@@ -0,0 +1,255 @@
+package com.oaktree.core.logging.pool;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A bounded, preallocated ring of mutable slots for many producers and a single consumer.
+ *
+ * Producers claim a slot with a single atomic increment, fill the preallocated object in place and
+ * then publish it. The consumer takes published slots in sequence, processes them and releases them
+ * back to the producers. Nothing is allocated per entry and there is no lock hand off between
+ * producer and consumer, unlike a LinkedBlockingQueue which makes a node per add.
+ *
+ * Each slot carries its own sequence number which tells both sides what state it is in:
+ * <li>seq == n: free for the producer that claimed n</li>
+ * <li>seq == n+1: published by that producer; ready for the consumer</li>
+ * <li>seq == n+capacity: released by the consumer; free for the producer one lap later</li>
+ *
+ * While a slot is being processed by the consumer it is marked TAKEN, and while an overwriting
+ * producer is refilling a slot it is marked WRITING.
+ *
+ * When the ring is full a producer may wait for the consumer (claim), give up (tryClaim) or overwrite
+ * the oldest record that the consumer has not yet taken (claimOverwriting). Capacity should be sized for
+ * the bursts you expect. Once the consumer has closed the ring every claim fails, so producers never
+ * wait on a consumer that has gone.
+ *
+ * @author Oak Tree Designs Ltd
+ *
+ * @param <T> type of the slot objects.
+ */
+public class RingBuffer<T> {
+
+	/**
+	 * Slot marker while the consumer is processing it.
+	 */
+	private final static long TAKEN = -1;
+	/**
+	 * Slot marker while an overwriting producer is refilling it.
+	 */
+	private final static long WRITING = -2;
+
+	/**
+	 * The preallocated slot objects.
+	 */
+	private final Object[] slots;
+	/**
+	 * Sequence number per slot; see class comment.
+	 */
+	private final AtomicLongArray sequences;
+	private final int capacity;
+	private final int mask;
+	/**
+	 * Next sequence to be claimed by a producer.
+	 */
+	private final AtomicLong claimSequence = new AtomicLong(0);
+	/**
+	 * Next sequence to be consumed. Only written by the consumer thread.
+	 */
+	private volatile long consumeSequence = 0;
+	/**
+	 * Number of sequences passed over by the last drain (taken or found overwritten) and not yet released.
+	 */
+	private int pending = 0;
+	/**
+	 * Set by the consumer when it will take no more.
+	 */
+	private volatile boolean closed = false;
+
+	/**
+	 * Make a ring. Capacity is rounded up to the next power of two.
+	 * @param capacity
+	 * @param factory
+	 */
+	public RingBuffer(int capacity, IObjectFactory<T> factory) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("Invalid capacity. Must be positive integer");
+		}
+		if (factory == null) {
+			throw new IllegalArgumentException("Invalid factory. Must be not-null so we can make objects.");
+		}
+		int size = 1;
+		while (size < capacity) {
+			size <<= 1;
+		}
+		this.capacity = size;
+		this.mask = size - 1;
+		this.slots = new Object[size];
+		this.sequences = new AtomicLongArray(size);
+		for (int i = 0; i < size; i++) {
+			slots[i] = factory.make();
+			sequences.set(i, i);
+		}
+	}
+
+	/**
+	 * Claim the next sequence, waiting if the ring is full until the consumer releases its slot.
+	 * The caller must fill the slot and then publish the sequence.
+	 * @return claimed sequence or -1 if the ring is closed.
+	 */
+	public long claim() {
+		if (closed) {
+			return -1;
+		}
+		long seq = claimSequence.getAndIncrement();
+		int index = (int)seq & mask;
+		while (sequences.get(index) != seq) {
+			if (closed) {
+				return -1;
+			}
+			Thread.yield();
+		}
+		return seq;
+	}
+
+	/**
+	 * Claim the next sequence only if there is a free slot for it.
+	 * @return claimed sequence or -1 if the ring is full or closed.
+	 */
+	public long tryClaim() {
+		if (closed) {
+			return -1;
+		}
+		for (;;) {
+			long seq = claimSequence.get();
+			long state = sequences.get((int)seq & mask);
+			if (state == seq) {
+				if (claimSequence.compareAndSet(seq, seq + 1)) {
+					return seq;
+				}
+			} else if (state < seq) {
+				//slot still holds an unconsumed record from the previous lap.
+				return -1;
+			}
+			//else another producer has claimed this sequence already; try the next.
+		}
+	}
+
+	/**
+	 * Claim the next sequence; if the ring is full overwrite the oldest record the consumer has not
+	 * yet taken. Waits only if that slot is currently being processed by the consumer.
+	 * @param overwritten incremented each time a record is overwritten.
+	 * @return claimed sequence or -1 if the ring is closed.
+	 */
+	public long claimOverwriting(AtomicLong overwritten) {
+		if (closed) {
+			return -1;
+		}
+		long seq = claimSequence.getAndIncrement();
+		int index = (int)seq & mask;
+		for (;;) {
+			if (closed) {
+				return -1;
+			}
+			long state = sequences.get(index);
+			if (state == seq) {
+				return seq;
+			}
+			if (state == seq - capacity + 1 && sequences.compareAndSet(index, state, WRITING)) {
+				overwritten.incrementAndGet();
+				return seq;
+			}
+			Thread.yield();
+		}
+	}
+
+	/**
+	 * Get the slot object for a claimed sequence.
+	 * @param seq
+	 * @return slot
+	 */
+	@SuppressWarnings("unchecked")
+	public T get(long seq) {
+		return (T)slots[(int)seq & mask];
+	}
+
+	/**
+	 * Make a filled slot visible to the consumer.
+	 * @param seq
+	 */
+	public void publish(long seq) {
+		sequences.lazySet((int)seq & mask, seq + 1);
+	}
+
+	/**
+	 * Consumer only. Add up to max published slots, in sequence, to the batch. The slots remain
+	 * owned by the consumer until release is called. Records that were overwritten before we
+	 * reached them are passed over.
+	 * @param batch
+	 * @param max
+	 * @return number of slots added.
+	 */
+	@SuppressWarnings("unchecked")
+	public int drainTo(List<T> batch, int max) {
+		long next = consumeSequence + pending;
+		int n = 0;
+		//never span more than a lap so release can tell our slots apart.
+		while (n < max && pending < capacity) {
+			int index = (int)next & mask;
+			long state = sequences.get(index);
+			if (state == next + 1) {
+				if (!sequences.compareAndSet(index, state, TAKEN)) {
+					continue; //lost it to an overwriting producer; look again.
+				}
+				batch.add((T)slots[index]);
+				n++;
+			} else if (state <= next + 1) {
+				//not published yet, or being overwritten.
+				break;
+			}
+			//else overwritten by a later lap; it will be consumed in its turn.
+			next++;
+			pending++;
+		}
+		return n;
+	}
+
+	/**
+	 * Consumer only. Hand all drained slots back to the producers.
+	 */
+	public void release() {
+		long seq = consumeSequence;
+		for (int i = 0; i < pending; i++, seq++) {
+			int index = (int)seq & mask;
+			if (sequences.get(index) == TAKEN) {
+				sequences.lazySet(index, seq + capacity);
+			}
+		}
+		pending = 0;
+		consumeSequence = seq;
+	}
+
+	/**
+	 * Consumer only. Take no more; producers waiting for a slot, and any that come later, fail
+	 * their claim rather than wait for ever.
+	 */
+	public void close() {
+		closed = true;
+	}
+
+	public boolean isClosed() {
+		return closed;
+	}
+
+	/**
+	 * @return approximate number of claimed but unconsumed slots.
+	 */
+	public int size() {
+		return (int)Math.max(0, claimSequence.get() - consumeSequence);
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+}
@@ -84,6 +84,10 @@ public class SimplePool<T> implements IPool<T> {
 	 * Lock for ensuring pool expansion only occurs one at a time.
 	 */
 	private Object expandLock = new Object(); 
+	/**
+	 * Optional counters of pool activity.
+	 */
+	private PoolStatistics statistics;
 	
 	/**
 	 * 
@@ -112,7 +116,8 @@ public class SimplePool<T> implements IPool<T> {
 	 * Return the object factory
 	 * @return object factory.
 	 */
-	IObjectFactory<T> getObjectFactory() {
+	@Override
+	public IObjectFactory<T> getObjectFactory() {
 		return factory;
 	}
 	/**
@@ -125,6 +130,20 @@ public class SimplePool<T> implements IPool<T> {
 		this.waitPolicy = waitPolicy;
 	}
 	
+	/**
+	 * Start counting pool activity; see PoolStatistics.
+	 * @param name
+	 * @return statistics, not yet registered in jmx.
+	 */
+	public PoolStatistics enableStatistics(String name) {
+		this.statistics = new PoolStatistics(name, this);
+		return this.statistics;
+	}
+	
+	public PoolStatistics getStatistics() {
+		return statistics;
+	}
+	
 	@Override
 	public T get() {
 		//find a "free" slot, reserve and dispense.
@@ -133,6 +152,9 @@ public class SimplePool<T> implements IPool<T> {
 			return obj;
 		}
 		//could not find anything...
+		if (statistics != null) {
+			statistics.onMiss(waitPolicy != null);
+		}
 		if (waitPolicy != null) {
 			return waitPolicy.wait(this);
 		}
@@ -147,10 +169,16 @@ public class SimplePool<T> implements IPool<T> {
 			int extIndexOf = extendedAllObjects.indexOf(record);
 			if (extIndexOf >= 0) {
 				extendedFreeList.get(extIndexOf).set(true);
+				if (statistics != null) {
+					statistics.onFree();
+				}
 			}
 			return; //wtf nought to do with us.
 		}
 		freeList.get(indexOf).set(true);
+		if (statistics != null) {
+			statistics.onFree();
+		}
 	}
 
 	@Override
@@ -170,6 +198,9 @@ public class SimplePool<T> implements IPool<T> {
 			int expandBy = capacity - this.capacity.get();
 			if (expandBy > 0) {
 				expandPoolBy(expandBy);
+				if (statistics != null) {
+					statistics.onExpand();
+				}
 			}
 			this.capacity.set(capacity);
 		}
@@ -193,10 +224,14 @@ public class SimplePool<T> implements IPool<T> {
 	 * Get a free object from pool(s)
 	 * @return free object, or null if none found.
 	 */
+	@Override
 	public T getFreeObject() {
 		for (int i = 0; i < allObjects.size(); i++) {
 			AtomicBoolean state = freeList.get(i);
 			if (state.compareAndSet(true, false)) {
+				if (statistics != null) {
+					statistics.onHit();
+				}
 				return allObjects.get(i);
 			}
 		}
@@ -204,6 +239,9 @@ public class SimplePool<T> implements IPool<T> {
 		for (int i = 0; i < extendedAllObjects.size(); i++) {
 			AtomicBoolean state = extendedFreeList.get(i);
 			if (state.compareAndSet(true, false)) {
+				if (statistics != null) {
+					statistics.onHit();
+				}
 				return extendedAllObjects.get(i);
 			}
 		}
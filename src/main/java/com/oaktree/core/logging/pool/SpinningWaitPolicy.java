@@ -3,7 +3,7 @@ package com.oaktree.core.logging.pool;
 public class SpinningWaitPolicy<T> implements IWaitPolicy<T> {
 
 	@Override
-	public T wait(SimplePool<T> pool) {
+	public T wait(IPool<T> pool) {
 		T obj = null;
 		while (obj == null) {
 			obj = pool.getFreeObject();
@@ -0,0 +1,233 @@
+package com.oaktree.core.logging.pool;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An object pool where get and free cost the same whatever the capacity, unlike SimplePool which scans
+ * its free list from the start on every get and searches its object list on every free.
+ *
+ * Free objects are kept on a lock free stack of slot indices. The head of the stack holds the top index
+ * and a version number, changed on every push and pop, so a get cannot be fooled by the slot it saw on
+ * top being taken and returned in between (the ABA problem). The slot of an object being freed is found
+ * through an identity map made when the pool is made and never changed afterwards.
+ *
+ * Objects are only ever on the stack once; freeing an object that is already free is ignored.
+ *
+ * When the pool is grown (setCapacity, or the ExpandPoolWaitPolicy) the new objects go into a further
+ * StackPool chained onto this one, checked after this one is empty.
+ *
+ * @author Oak Tree Designs Ltd
+ *
+ * @param <T> Object type this pool will hold.
+ */
+public class StackPool<T> implements IPool<T> {
+
+	private final static int FREE = 0;
+	private final static int IN_USE = 1;
+	private final static long INDEX_MASK = 0xFFFFFFFFL;
+
+	/**
+	 * The pooled objects.
+	 */
+	private final Object[] objects;
+	/**
+	 * Slot of each pooled object, for free.
+	 */
+	private final Map<T, Integer> slots;
+	/**
+	 * For each free slot on the stack, the slot below it plus one; 0 for the bottom.
+	 */
+	private final int[] next;
+	/**
+	 * FREE or IN_USE per slot.
+	 */
+	private final AtomicIntegerArray states;
+	/**
+	 * Version in the high 32 bits, top slot plus one in the low 32 bits; 0 if empty.
+	 */
+	private final AtomicLong head = new AtomicLong(0);
+
+	/**
+	 * Factory to create objects.
+	 */
+	private final IObjectFactory<T> factory;
+	/**
+	 * Optional thing todo when no entry found e.g. block, spin, barf....etc.
+	 */
+	private IWaitPolicy<T> waitPolicy = new NewObjectWaitPolicy<T>();
+	/**
+	 * Pool holding the objects added by growing this one, if any.
+	 */
+	private volatile StackPool<T> extension;
+	/**
+	 * Lock for ensuring pool expansion only occurs one at a time.
+	 */
+	private final Object expandLock = new Object();
+	/**
+	 * Optional counters of pool activity.
+	 */
+	private PoolStatistics statistics;
+
+	/**
+	 *
+	 * @param capacity
+	 * @param factory
+	 */
+	public StackPool(int capacity, IObjectFactory<T> factory) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("Invalid capacity. Must be positive integer");
+		}
+		if (factory == null) {
+			throw new IllegalArgumentException("Invalid factory. Must be not-null so we can make objects.");
+		}
+		this.factory = factory;
+		this.objects = new Object[capacity];
+		this.slots = new IdentityHashMap<T, Integer>(capacity);
+		this.next = new int[capacity];
+		this.states = new AtomicIntegerArray(capacity);
+		for (int i = 0; i < capacity; i++) {
+			T obj = factory.make();
+			objects[i] = obj;
+			slots.put(obj, i);
+			next[i] = i; //slot i-1 is below us; slot 0 is at the bottom.
+		}
+		head.set(capacity);
+	}
+
+	/**
+	 * Inject an optional wait policy invoked when there is no
+	 * pooled object free.
+	 *
+	 * @param waitPolicy
+	 */
+	public void setWaitPolicy(IWaitPolicy<T> waitPolicy) {
+		this.waitPolicy = waitPolicy;
+	}
+
+	/**
+	 * Start counting pool activity; see PoolStatistics.
+	 * @param name
+	 * @return statistics, not yet registered in jmx.
+	 */
+	public PoolStatistics enableStatistics(String name) {
+		this.statistics = new PoolStatistics(name, this);
+		return this.statistics;
+	}
+
+	public PoolStatistics getStatistics() {
+		return statistics;
+	}
+
+	@Override
+	public T get() {
+		T obj = getFreeObject();
+		if (obj != null) {
+			return obj;
+		}
+		//could not find anything...
+		if (statistics != null) {
+			statistics.onMiss(waitPolicy != null);
+		}
+		if (waitPolicy != null) {
+			return waitPolicy.wait(this);
+		}
+		return null;
+	}
+
+	@Override
+	public T getFreeObject() {
+		T obj = pop();
+		if (obj != null && statistics != null) {
+			statistics.onHit();
+		}
+		return obj;
+	}
+
+	@SuppressWarnings("unchecked")
+	private T pop() {
+		for (;;) {
+			long h = head.get();
+			int top = (int)(h & INDEX_MASK);
+			if (top == 0) {
+				break;
+			}
+			int slot = top - 1;
+			long popped = (((h >>> 32) + 1) << 32) | next[slot];
+			if (head.compareAndSet(h, popped)) {
+				states.lazySet(slot, IN_USE);
+				return (T)objects[slot];
+			}
+		}
+		StackPool<T> ext = extension;
+		return ext != null ? ext.pop() : null;
+	}
+
+	@Override
+	public void free(T obj) {
+		if (push(obj) && statistics != null) {
+			statistics.onFree();
+		}
+	}
+
+	/**
+	 * @param obj
+	 * @return true if the object was ours and in use.
+	 */
+	private boolean push(T obj) {
+		Integer slot = slots.get(obj);
+		if (slot == null) {
+			StackPool<T> ext = extension;
+			//not one of ours e.g. made by a wait policy.
+			return ext != null && ext.push(obj);
+		}
+		int s = slot.intValue();
+		if (!states.compareAndSet(s, IN_USE, FREE)) {
+			return false; //already free.
+		}
+		for (;;) {
+			long h = head.get();
+			next[s] = (int)(h & INDEX_MASK);
+			if (head.compareAndSet(h, (((h >>> 32) + 1) << 32) | (s + 1))) {
+				return true;
+			}
+		}
+	}
+
+	@Override
+	public int getCapacity() {
+		StackPool<T> ext = extension;
+		return objects.length + (ext != null ? ext.getCapacity() : 0);
+	}
+
+	@Override
+	public void setCapacity(int capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("Invalid size for object pool. Must be positive integer");
+		}
+		synchronized (expandLock) {
+			int current = getCapacity();
+			if (capacity < current) {
+				throw new IllegalArgumentException("Reduction of object pool is not supported");
+			}
+			if (capacity == current) {
+				return;
+			}
+			if (extension == null) {
+				extension = new StackPool<T>(capacity - current, factory);
+			} else {
+				extension.setCapacity(capacity - objects.length);
+			}
+			if (statistics != null) {
+				statistics.onExpand();
+			}
+		}
+	}
+
+	@Override
+	public IObjectFactory<T> getObjectFactory() {
+		return factory;
+	}
+}
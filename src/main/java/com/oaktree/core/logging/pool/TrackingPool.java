@@ -0,0 +1,152 @@
+package com.oaktree.core.logging.pool;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A pool decorator for finding pooling bugs; not for production use as every get and free takes a lock
+ * and records where the object was handed out.
+ *
+ * It keeps every object that has been got and not yet freed and reports:
+ * <li>objects freed twice, or freed without having been got (use after free)</li>
+ * <li>objects handed out by the pool while still in use</li>
+ * <li>objects never returned (leaks), with the stack that got them, when reportLeaks is called</li>
+ *
+ * Switched on for the record pools with the system property oaktree.logging.pool.debug=true.
+ *
+ * @author Oak Tree Designs Ltd
+ *
+ * @param <T>
+ */
+public class TrackingPool<T> implements IPool<T> {
+
+	public final static String DEBUG_PROPERTY = "oaktree.logging.pool.debug";
+	/**
+	 * Whether pool debugging was asked for on the command line.
+	 */
+	public final static boolean DEBUG = Boolean.getBoolean(DEBUG_PROPERTY);
+
+	private final IPool<T> pool;
+	/**
+	 * Objects in use, with the stack of the get that handed them out.
+	 */
+	private final Map<T, Throwable> outstanding = new IdentityHashMap<T, Throwable>();
+	private long gets = 0;
+	private long frees = 0;
+	private long badFrees = 0;
+	private long reissues = 0;
+	private int highWater = 0;
+
+	public TrackingPool(IPool<T> pool) {
+		if (pool == null) {
+			throw new IllegalArgumentException("Invalid pool. Must be not-null");
+		}
+		this.pool = pool;
+	}
+
+	@Override
+	public T get() {
+		return track(pool.get());
+	}
+
+	@Override
+	public T getFreeObject() {
+		return track(pool.getFreeObject());
+	}
+
+	@Override
+	public IObjectFactory<T> getObjectFactory() {
+		return pool.getObjectFactory();
+	}
+
+	private T track(T obj) {
+		if (obj == null) {
+			return null;
+		}
+		Throwable previous;
+		synchronized (outstanding) {
+			gets++;
+			previous = outstanding.put(obj, new Throwable("Got from pool by " + Thread.currentThread().getName()));
+			highWater = Math.max(highWater, outstanding.size());
+			if (previous != null) {
+				reissues++;
+			}
+		}
+		if (previous != null) {
+			System.err.println("Pool handed out an object that is still in use: " + obj + ". Previously got at:");
+			previous.printStackTrace();
+		}
+		return obj;
+	}
+
+	@Override
+	public void free(T obj) {
+		boolean known;
+		synchronized (outstanding) {
+			known = outstanding.remove(obj) != null;
+			if (known) {
+				frees++;
+			} else {
+				badFrees++;
+			}
+		}
+		if (!known) {
+			new Throwable("Object freed twice or never got from pool: " + obj).printStackTrace();
+			return;
+		}
+		pool.free(obj);
+	}
+
+	@Override
+	public int getCapacity() {
+		return pool.getCapacity();
+	}
+
+	@Override
+	public void setCapacity(int capacity) {
+		pool.setCapacity(capacity);
+	}
+
+	/**
+	 * @return number of objects got and not yet freed.
+	 */
+	public int getOutstanding() {
+		synchronized (outstanding) {
+			return outstanding.size();
+		}
+	}
+
+	public long getBadFrees() {
+		synchronized (outstanding) {
+			return badFrees;
+		}
+	}
+
+	/**
+	 * Print every object not yet freed with the stack that got it.
+	 * @return number of objects not yet freed.
+	 */
+	public int reportLeaks() {
+		List<Throwable> leaks;
+		synchronized (outstanding) {
+			leaks = new ArrayList<Throwable>(outstanding.values());
+		}
+		if (!leaks.isEmpty()) {
+			System.err.println("Pool has " + leaks.size() + " objects not returned. " + this);
+			for (Throwable t:leaks) {
+				t.printStackTrace();
+			}
+		}
+		return leaks.size();
+	}
+
+	@Override
+	public String toString() {
+		synchronized (outstanding) {
+			return "gets: " + gets + " frees: " + frees + " outstanding: " + outstanding.size() + " highwater: " + highWater
+				+ " bad frees: " + badFrees + " reissues: " + reissues + " capacity: " + pool.getCapacity();
+		}
+	}
+}
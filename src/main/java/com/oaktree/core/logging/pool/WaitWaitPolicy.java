@@ -6,7 +6,7 @@ public class WaitWaitPolicy<T> implements IWaitPolicy<T> {
 		this.wait = waitInMillis;
 	}
 	@Override
-	public T wait(SimplePool<T> pool) {
+	public T wait(IPool<T> pool) {
 		T obj = pool.getFreeObject();
 		while (obj == null) {
 			try {
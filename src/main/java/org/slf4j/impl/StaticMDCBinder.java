@@ -0,0 +1,21 @@
+package org.slf4j.impl;
+
+import org.slf4j.spi.MDCAdapter;
+
+import com.oaktree.core.logging.mdc.OaktreeMDCAdapter;
+
+public class StaticMDCBinder {
+
+	public static final StaticMDCBinder SINGLETON = new StaticMDCBinder();
+
+	private StaticMDCBinder() {
+	}
+
+	public MDCAdapter getMDCA() {
+		return new OaktreeMDCAdapter();
+	}
+
+	public String getMDCAdapterClassStr() {
+		return OaktreeMDCAdapter.class.getName();
+	}
+}
@@ -0,0 +1,24 @@
+package org.slf4j.impl;
+
+import org.slf4j.IMarkerFactory;
+import org.slf4j.spi.MarkerFactoryBinder;
+
+import com.oaktree.core.logging.markers.OaktreeMarkerFactory;
+
+public class StaticMarkerBinder implements MarkerFactoryBinder {
+
+	public static final StaticMarkerBinder SINGLETON = new StaticMarkerBinder();
+
+	private final IMarkerFactory markerFactory = new OaktreeMarkerFactory();
+
+	private StaticMarkerBinder() {
+	}
+
+	public IMarkerFactory getMarkerFactory() {
+		return markerFactory;
+	}
+
+	public String getMarkerFactoryClassStr() {
+		return OaktreeMarkerFactory.class.getName();
+	}
+}
@@ -1,20 +1,65 @@
 package com.oaktree.core.logging;
 
+import com.oaktree.core.logging.binlog.UnsafeMemory;
+import com.oaktree.core.logging.binlog.write.DirectFileHandler;
+import com.oaktree.core.logging.clock.CoarseClock;
+import com.oaktree.core.logging.clock.IClock;
+import com.oaktree.core.logging.clock.ManualClock;
+import com.oaktree.core.logging.clock.NanoClock;
 import com.oaktree.core.logging.formatters.ConsoleFormatter;
+import com.oaktree.core.logging.mdc.MDCMap;
+import com.oaktree.core.logging.markers.OaktreeMarker;
+import com.oaktree.core.logging.formatters.PatternFormatter;
+import com.oaktree.core.logging.handlers.AdaptiveFlushPolicy;
+import com.oaktree.core.logging.handlers.BackgroundConsoleHandler;
+import com.oaktree.core.logging.handlers.BackgroundFileHandler;
+import com.oaktree.core.logging.handlers.BlockingOverflowPolicy;
 import com.oaktree.core.logging.handlers.ConsoleHandler;
+import com.oaktree.core.logging.handlers.DropBelowLevelOverflowPolicy;
+import com.oaktree.core.logging.handlers.DropNewestOverflowPolicy;
+import com.oaktree.core.logging.handlers.DropOldestOverflowPolicy;
 import com.oaktree.core.logging.handlers.ILoggingHandler;
 import com.oaktree.core.logging.handlers.IOutputStreamHandler;
+import com.oaktree.core.logging.handlers.IOverflowPolicy;
+import com.oaktree.core.logging.handlers.MarkerFilterHandler;
+import com.oaktree.core.logging.handlers.RepeatSuppressingHandler;
+import com.oaktree.core.logging.handlers.SpinningOverflowPolicy;
+import com.oaktree.core.logging.pool.IObjectFactory;
+import com.oaktree.core.logging.pool.MagazinePool;
+import com.oaktree.core.logging.pool.PoolStatistics;
+import com.oaktree.core.logging.pool.RingBuffer;
+import com.oaktree.core.logging.pool.SimplePool;
+import com.oaktree.core.logging.pool.StackPool;
+import com.oaktree.core.logging.pool.TrackingPool;
 
 import junit.framework.Assert;
 
 import org.junit.After;
 import org.junit.Test;
 import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import org.slf4j.Marker;
+import org.slf4j.MarkerFactory;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
 import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Properties;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.management.ObjectName;
 
 public class TestLogging {
 	
@@ -137,7 +182,283 @@ public class TestLogging {
 		
 	}
 
-    
+	@Test
+	public void testParameterisedMessages() {
+		LowLatencyLogManager.clear();
+		LowLatencyLogger logger = new LowLatencyLogger("com.oaktree.core.logging.params", null);
+		logger.setLevel(Level.DEBUG);
+		final StringBuilder buffer = new StringBuilder();
+		logger.addHandler(this.makeDebugHandler(buffer));
+
+		logger.info("order {} filled {} at {}", new Object[]{"abc", 100, 1.5d});
+		Assert.assertTrue(buffer.toString().endsWith(" order abc filled 100 at 1.5\n"));
+		buffer.delete(0, buffer.length());
+
+		logger.debug("one {} two {}", "a");
+		Assert.assertTrue(buffer.toString().endsWith(" one a two {}\n"));
+		buffer.delete(0, buffer.length());
+
+		logger.warn("escaped \\{} then {}", "x");
+		Assert.assertTrue(buffer.toString().endsWith(" escaped {} then x\n"));
+		buffer.delete(0, buffer.length());
+
+		logger.error("arr {} {}", new int[]{1,2}, null);
+		Assert.assertTrue(buffer.toString().endsWith(" arr [1, 2] null\n"));
+		buffer.delete(0, buffer.length());
+
+		logger.setLevel(Level.INFO);
+		logger.debug("filtered {}", "x");
+		Assert.assertEquals(0, buffer.length());
+	}
+
+	@Test
+	public void testPrimitiveArguments() {
+		LowLatencyLogger logger = new LowLatencyLogger("com.oaktree.core.logging.primitives", null);
+		logger.setLevel(Level.DEBUG);
+		final StringBuilder buffer = new StringBuilder();
+		logger.addHandler(this.makeDebugHandler(buffer));
+
+		logger.info("order {} qty {} px {}", 12345L, 500L, 101.25d);
+		Assert.assertTrue(buffer.toString().endsWith(" order 12345 qty 500 px 101.25\n"));
+		buffer.delete(0, buffer.length());
+
+		logger.warn("{} {} {} {}", 1.5d, 2d, 3d, 4d);
+		Assert.assertTrue(buffer.toString().endsWith(" 1.5 2.0 3.0 4.0\n"));
+		buffer.delete(0, buffer.length());
+
+		//longs keep every digit whatever doubles are around them.
+		long orderId = 1234567890123456789L;
+		logger.info("px {} id {} qty {}", 101.25, orderId, 500L);
+		Assert.assertTrue(buffer.toString(), buffer.toString().endsWith(" px 101.25 id 1234567890123456789 qty 500\n"));
+		buffer.delete(0, buffer.length());
+
+		logger.debug("{} {} {} {}", 0.5, orderId, 1.5, orderId);
+		Assert.assertTrue(buffer.toString(), buffer.toString().endsWith(" 0.5 1234567890123456789 1.5 1234567890123456789\n"));
+		buffer.delete(0, buffer.length());
+
+		ILogRecord record = new LogRecord();
+		record.setMessage("px {} id {}");
+		record.addArgument(99.5d);
+		record.addArgument(7);
+		Assert.assertEquals(ILogRecord.DOUBLE_ARGUMENT, record.getArgumentType(0));
+		Assert.assertEquals(ILogRecord.LONG_ARGUMENT, record.getArgumentType(1));
+		Assert.assertEquals(7L, record.getLongArgument(1));
+		Assert.assertEquals("px 99.5 id 7", record.getMessage());
+	}
+
+	@Test
+	public void testRingBufferOverflow() {
+		RingBuffer<ILogRecord> ring = new RingBuffer<ILogRecord>(4, new IObjectFactory<ILogRecord>() {
+			@Override
+			public ILogRecord make() {
+				return new LogRecord();
+			}
+		});
+		for (int i = 0; i < 4; i++) {
+			long seq = ring.tryClaim();
+			Assert.assertEquals(i, seq);
+			ring.get(seq).setMessage(String.valueOf(i));
+			ring.publish(seq);
+		}
+		Assert.assertEquals(-1, ring.tryClaim());
+
+		//overwrite the oldest; the consumer should pass over it.
+		AtomicLong overwritten = new AtomicLong();
+		long seq = ring.claimOverwriting(overwritten);
+		ring.get(seq).setMessage("4");
+		ring.publish(seq);
+		Assert.assertEquals(1, overwritten.get());
+
+		List<ILogRecord> batch = new ArrayList<ILogRecord>();
+		StringBuilder consumed = new StringBuilder();
+		while (ring.drainTo(batch, 10) > 0) {
+			for (ILogRecord r:batch) {
+				consumed.append(r.getMessage());
+			}
+			batch.clear();
+			ring.release();
+		}
+		Assert.assertEquals("1234", consumed.toString());
+		Assert.assertEquals(0, ring.size());
+		Assert.assertEquals(5, ring.tryClaim());
+	}
+
+	@Test
+	public void testOverflowPoliciesCountClosedRing() {
+		RingBuffer<ILogRecord> ring = new RingBuffer<ILogRecord>(4, new IObjectFactory<ILogRecord>() {
+			@Override
+			public ILogRecord make() {
+				return new LogRecord();
+			}
+		});
+		ring.close();
+		//each refusal counted once, by the policy, whatever it would have done with a full ring.
+		IOverflowPolicy[] policies = {new BlockingOverflowPolicy(), new DropNewestOverflowPolicy(),
+				new DropOldestOverflowPolicy(), new DropBelowLevelOverflowPolicy(Level.WARN),
+				new SpinningOverflowPolicy(1000)};
+		for (IOverflowPolicy policy:policies) {
+			Assert.assertEquals(policy.toString(), -1, policy.claim(ring, createTestRecord("late", Level.ERROR)));
+			Assert.assertEquals(policy.toString(), 1, policy.getDropped());
+		}
+	}
+
+	@Test
+	public void testAdaptiveFlushPolicySignal() throws Exception {
+		//goes straight to a long park so only a signal can wake it in time.
+		final AdaptiveFlushPolicy policy = new AdaptiveFlushPolicy(0, 0, 10000000000L, 10000000000L);
+		Thread idler = new Thread() {
+			public void run() {
+				policy.onIdle();
+			}
+		};
+		idler.start();
+		while (idler.getState() != Thread.State.TIMED_WAITING) {
+			Thread.yield();
+		}
+		policy.signal();
+		idler.join(1000);
+		Assert.assertFalse(idler.isAlive());
+	}
+
+	@Test
+	public void testFilteredRecordsReturnToPool() {
+		ConsoleHandler handler = new ConsoleHandler(new ConsoleFormatter());
+		handler.setLevel(Level.ERROR);
+		LowLatencyLogger logger = new LowLatencyLogger("com.oaktree.core.logging.pooltest", handler);
+		logger.setLevel(Level.INFO);
+		PoolStatistics stats = LowLatencyLogManager.getRecordPoolStatistics();
+		long inUse = stats.getInUse();
+		long misses = stats.getMisses();
+		for (int i = 0; i < stats.getCapacity() * 2; i++) {
+			logger.info("filtered by the handler {}", i);
+		}
+		//every record went back to the pool so none had to be made.
+		Assert.assertEquals(inUse, stats.getInUse());
+		Assert.assertEquals(misses, stats.getMisses());
+	}
+
+	@Test
+	public void testStackPool() throws Exception {
+		final StackPool<AtomicBoolean> pool = new StackPool<AtomicBoolean>(4, new IObjectFactory<AtomicBoolean>() {
+			@Override
+			public AtomicBoolean make() {
+				return new AtomicBoolean();
+			}
+		});
+		//never hand the same object to two threads at once.
+		final AtomicLong failures = new AtomicLong();
+		Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++) {
+			threads[t] = new Thread() {
+				public void run() {
+					for (int i = 0; i < 100000; i++) {
+						AtomicBoolean inUse = pool.getFreeObject();
+						if (inUse == null) {
+							continue;
+						}
+						if (!inUse.compareAndSet(false, true)) {
+							failures.incrementAndGet();
+						}
+						inUse.set(false);
+						pool.free(inUse);
+					}
+				}
+			};
+			threads[t].start();
+		}
+		for (Thread thread:threads) {
+			thread.join();
+		}
+		Assert.assertEquals(0, failures.get());
+
+		AtomicBoolean first = pool.getFreeObject();
+		for (int i = 1; i < 4; i++) {
+			Assert.assertNotNull(pool.getFreeObject());
+		}
+		Assert.assertNull(pool.getFreeObject());
+		//a double free must not put it on the stack twice.
+		pool.free(first);
+		pool.free(first);
+		Assert.assertSame(first, pool.getFreeObject());
+		Assert.assertNull(pool.getFreeObject());
+		pool.setCapacity(6);
+		Assert.assertEquals(6, pool.getCapacity());
+		Assert.assertNotNull(pool.getFreeObject());
+		Assert.assertNotNull(pool.getFreeObject());
+		Assert.assertNull(pool.getFreeObject());
+	}
+
+	@Test
+	public void testMagazinePool() {
+		StackPool<ILogRecord> shared = new StackPool<ILogRecord>(8, new IObjectFactory<ILogRecord>() {
+			@Override
+			public ILogRecord make() {
+				return new LogRecord();
+			}
+		});
+		shared.setWaitPolicy(null);
+		MagazinePool<ILogRecord> pool = new MagazinePool<ILogRecord>(shared, 4);
+		//first get takes half a magazine from the shared pool.
+		ILogRecord a = pool.get();
+		Assert.assertNotNull(a);
+		int left = 0;
+		while (shared.getFreeObject() != null) {
+			left++;
+		}
+		Assert.assertEquals(6, left);
+		//same thread gets back what it freed without the shared pool.
+		pool.free(a);
+		Assert.assertSame(a, pool.get());
+		Assert.assertNotNull(pool.get());
+		Assert.assertNull(pool.get());
+	}
+
+	@Test
+	public void testPoolStatistics() throws Exception {
+		StackPool<ILogRecord> pool = new StackPool<ILogRecord>(2, new IObjectFactory<ILogRecord>() {
+			@Override
+			public ILogRecord make() {
+				return new LogRecord();
+			}
+		});
+		PoolStatistics stats = pool.enableStatistics("test");
+		stats.register();
+		ILogRecord a = pool.get();
+		ILogRecord b = pool.get();
+		ILogRecord c = pool.get(); //made by the wait policy.
+		pool.free(a);
+		pool.free(b);
+		pool.free(c);
+		pool.setCapacity(4);
+		Assert.assertEquals(2, stats.getHits());
+		Assert.assertEquals(1, stats.getMisses());
+		Assert.assertEquals(1, stats.getWaitPolicyInvocations());
+		Assert.assertEquals(0, stats.getInUse());
+		Assert.assertEquals(2, stats.getHighWater());
+		Assert.assertEquals(1, stats.getExpansions());
+		Object capacity = ManagementFactory.getPlatformMBeanServer().getAttribute(new ObjectName("Logging:type=Oaktree,name=\"Pool.test\""), "Capacity");
+		Assert.assertEquals(4, capacity);
+	}
+
+	@Test
+	public void testTrackingPool() {
+		TrackingPool<ILogRecord> pool = new TrackingPool<ILogRecord>(new SimplePool<ILogRecord>(2, new IObjectFactory<ILogRecord>() {
+			@Override
+			public ILogRecord make() {
+				return new LogRecord();
+			}
+		}));
+		ILogRecord a = pool.get();
+		ILogRecord b = pool.get();
+		Assert.assertEquals(2, pool.getOutstanding());
+		pool.free(a);
+		pool.free(a);
+		Assert.assertEquals(1, pool.getBadFrees());
+		Assert.assertEquals(1, pool.reportLeaks());
+		pool.free(b);
+		Assert.assertEquals(0, pool.reportLeaks());
+	}
+
 	@Test
 	public void testNoFileProperties() {
 		System.setProperty(LowLatencyLogManager.LOGGING_FILE, "logging.properties.dontexist");
@@ -302,6 +623,201 @@ public class TestLogging {
 		System.out.print("Buffer: " + buffer.toString());
 	}
 
+	@Test
+	public void testBackgroundHandlerLanes() throws Exception {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ConsoleHandler delegate = new ConsoleHandler(new ConsoleFormatter());
+		delegate.setOutputStream(out);
+		final BackgroundConsoleHandler handler = new BackgroundConsoleHandler();
+		handler.setHandler(delegate);
+		handler.setLanes("4");
+		handler.setQueueSize("64");
+		handler.start();
+		final int THREADS = 8;
+		final int RECORDS = 1000;
+		Thread[] threads = new Thread[THREADS];
+		for (int t = 0; t < THREADS; t++) {
+			final int id = t;
+			threads[t] = new Thread() {
+				public void run() {
+					for (int i = 0; i < RECORDS; i++) {
+						handler.publish(createTestRecord("lane test " + id + ":" + i));
+					}
+				}
+			};
+			threads[t].start();
+		}
+		for (Thread thread:threads) {
+			thread.join();
+		}
+		handler.stop();
+		//every thread's records must come out complete and in order.
+		int[] next = new int[THREADS];
+		Matcher m = Pattern.compile("lane test (\\d+):(\\d+)").matcher(out.toString());
+		while (m.find()) {
+			int id = Integer.parseInt(m.group(1));
+			Assert.assertEquals(next[id]++, Integer.parseInt(m.group(2)));
+		}
+		for (int n:next) {
+			Assert.assertEquals(RECORDS, n);
+		}
+	}
+
+	@Test
+	public void testBackgroundHandlerPublishBeforeStart() {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ConsoleHandler delegate = new ConsoleHandler();
+		delegate.setFormatter(new PatternFormatter("%msg%n"));
+		delegate.setOutputStream(out);
+		BackgroundConsoleHandler handler = new BackgroundConsoleHandler();
+		handler.setHandler(delegate);
+		handler.setLanes("2");
+		handler.setQueueSize("2");
+		for (int i = 0; i < 5; i++) {
+			handler.publish(createTestRecord("early " + i));
+		}
+		handler.start();
+		handler.publish(createTestRecord("started"));
+		handler.stop();
+		Assert.assertEquals("early 0\nearly 1\nearly 2\nearly 3\nearly 4\nstarted\n", out.toString());
+	}
+
+	@Test
+	public void testBackgroundFileHandlerSeparateLanes() throws Exception {
+		File file = File.createTempFile("lanes", ".log");
+		File lane1 = new File(file.getPath() + ".1");
+		file.deleteOnExit();
+		lane1.deleteOnExit();
+		final BackgroundFileHandler handler = new BackgroundFileHandler();
+		handler.setFilename(file.getPath());
+		handler.setFormatter(new PatternFormatter("%msg%n"));
+		handler.setLanes("2");
+		handler.setLaneOutput("SEPARATE");
+		handler.start();
+		//one thread for each lane.
+		final boolean[] done = new boolean[2];
+		while (!done[0] || !done[1]) {
+			Thread t = new Thread() {
+				public void run() {
+					int lane = (int)(getId() % 2);
+					if (!done[lane]) {
+						handler.publish(createTestRecord("lane " + lane));
+						done[lane] = true;
+					}
+				}
+			};
+			t.start();
+			t.join();
+		}
+		handler.stop();
+		Assert.assertEquals("lane 0\n", readFile(file));
+		Assert.assertEquals("lane 1\n", readFile(lane1));
+	}
+
+	@Test
+	public void testBackgroundFileHandlerStackTraceCacheFromProperties() throws Exception {
+		File file = File.createTempFile("stacks", ".log");
+		File lane1 = new File(file.getPath() + ".1");
+		File props = File.createTempFile("stacks", ".properties");
+		file.deleteOnExit();
+		lane1.deleteOnExit();
+		props.deleteOnExit();
+		FileOutputStream fos = new FileOutputStream(props);
+		try {
+			Properties p = new Properties();
+			p.setProperty("handlers", "STACKS");
+			p.setProperty("STACKS.handler", BackgroundFileHandler.class.getName());
+			p.setProperty("STACKS.pattern", "%msg%n");
+			p.setProperty("STACKS.filename", file.getPath());
+			p.setProperty("STACKS.lanes", "2");
+			p.setProperty("STACKS.laneOutput", "SEPARATE");
+			p.setProperty("STACKS.stackTraceCache", "16");
+			p.store(fos, null);
+		} finally {
+			fos.close();
+		}
+		System.setProperty(LowLatencyLogManager.LOGGING_FILE, props.getPath());
+		try {
+			LowLatencyLogManager.initialiseFromProperies(true);
+			final ILoggingHandler handler = LowLatencyLogManager.getHandler("STACKS");
+			//two records with the same trace from a thread on each lane.
+			final boolean[] done = new boolean[2];
+			while (!done[0] || !done[1]) {
+				Thread t = new Thread() {
+					public void run() {
+						int lane = (int)(getId() % 2);
+						if (!done[lane]) {
+							for (int i = 0; i < 2; i++) {
+								ILogRecord record = createTestRecord("lane " + lane);
+								record.setThrowable(makeException("attempt " + i));
+								handler.publish(record);
+							}
+							done[lane] = true;
+						}
+					}
+				};
+				t.start();
+				t.join();
+			}
+			handler.stop();
+			for (File f:new File[]{file, lane1}) {
+				String text = readFile(f);
+				Assert.assertTrue(text, text.contains("attempt 0 [stack "));
+				Assert.assertTrue(text, text.contains("attempt 1 [stack "));
+				Assert.assertTrue(text, text.contains(" repeated]"));
+			}
+		} finally {
+			System.setProperty(LowLatencyLogManager.LOGGING_FILE, this.propertyFileName);
+			LowLatencyLogManager.clear();
+		}
+	}
+
+	private static String readFile(File file) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		FileInputStream in = new FileInputStream(file);
+		try {
+			byte[] buffer = new byte[4096];
+			int n;
+			while ((n = in.read(buffer)) > 0) {
+				out.write(buffer, 0, n);
+			}
+		} finally {
+			in.close();
+		}
+		return out.toString("UTF-8");
+	}
+
+	@Test
+	public void testBackgroundHandlerSurvivesDelegateFailure() {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ConsoleHandler delegate = new ConsoleHandler() {
+			@Override
+			public void publish(ILogRecord record) {
+				if ("bad".equals(record.getMessage())) {
+					throw new IllegalStateException("cannot write");
+				}
+				super.publish(record);
+			}
+		};
+		delegate.setFormatter(new PatternFormatter("%msg%n"));
+		delegate.setOutputStream(out);
+		BackgroundConsoleHandler handler = new BackgroundConsoleHandler();
+		handler.setHandler(delegate);
+		handler.setBatchSize("1");
+		handler.setQueueSize("2");
+		handler.start();
+		for (String message:new String[]{"one", "bad", "two"}) {
+			handler.publish(createTestRecord(message));
+		}
+		handler.stop();
+		Assert.assertEquals("one\ntwo\n", out.toString());
+		//the ring is full of nothing but its processor has gone, so these must not wait.
+		for (int i = 0; i < 10; i++) {
+			handler.publish(createTestRecord("late"));
+		}
+		Assert.assertEquals(10, handler.getDropped());
+	}
+
 	@Test
 	public void testConsoleFormatter() {
 		final String MESSAGE = "hello";
@@ -314,6 +830,640 @@ public class TestLogging {
 		Assert.assertTrue(bits[4].equals(MESSAGE+"\n"));
 	}
 	
+	@Test
+	public void testPatternFormatter() {
+		ILogRecord record = createTestRecord("order {} filled");
+		record.addArgument(42L);
+		//the default pattern is the console layout.
+		Assert.assertEquals(new ConsoleFormatter().format(record), new PatternFormatter().format(record));
+		PatternFormatter formatter = new PatternFormatter("[%level] %% %msg|%tid");
+		Assert.assertEquals("[INFO] % order 42 filled|" + Thread.currentThread().getId(), formatter.format(record));
+		try {
+			new PatternFormatter("%bogus");
+			Assert.fail("Unknown fields should be rejected");
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+	@Test
+	public void testUtf8Output() throws Exception {
+		//ascii, 2, 3 and 4 byte chars plus a message longer than the handler's starting buffer.
+		StringBuilder big = new StringBuilder();
+		for (int i = 0; i < 200; i++) {
+			big.append("line ").append(i).append(' ');
+		}
+		String[] messages = {"plain", "caf\u00e9 \u20ac5 \ud83d\ude00", big.toString()};
+		PatternFormatter formatter = new PatternFormatter("%level %msg%n");
+		ConsoleHandler handler = new ConsoleHandler();
+		handler.setFormatter(formatter);
+		handler.setEncoding("UTF-8");
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		handler.setOutputStream(out);
+		StringBuilder expected = new StringBuilder();
+		List<ILogRecord> batch = new ArrayList<ILogRecord>();
+		for (String message:messages) {
+			handler.publish(createTestRecord(message));
+			batch.add(createTestRecord(message));
+			expected.append(formatter.format(createTestRecord(message)));
+		}
+		handler.publish(batch);
+		Assert.assertEquals(expected.toString() + expected.toString(), new String(out.toByteArray(), "UTF-8"));
+	}
+
+	@Test
+	public void testTimestampRenderer() {
+		long now = System.currentTimeMillis();
+		Assert.assertEquals(Text.toTime(now - Text.getToday()), TimestampRenderer.render(now));
+		Calendar cal = Calendar.getInstance();
+		cal.setTimeInMillis(now);
+		cal.add(Calendar.DATE, 1);
+		cal.set(Calendar.HOUR_OF_DAY, 0);
+		cal.set(Calendar.MINUTE, 0);
+		cal.set(Calendar.SECOND, 1);
+		cal.set(Calendar.MILLISECOND, 5);
+		//past midnight the day moves on.
+		Assert.assertEquals("00:00:01.005", TimestampRenderer.render(cal.getTimeInMillis()));
+		Assert.assertEquals(1005, TimestampRenderer.sinceMidnight(cal.getTimeInMillis()));
+		cal.add(Calendar.DATE, -2);
+		cal.set(Calendar.HOUR_OF_DAY, 23);
+		Assert.assertEquals("23:00:01.005", TimestampRenderer.render(cal.getTimeInMillis()));
+		Assert.assertEquals("23:00:01.099", TimestampRenderer.render(cal.getTimeInMillis() + 94));
+	}
+
+	@Test
+	public void testClocks() {
+		ConsoleHandler handler = new ConsoleHandler(new ConsoleFormatter());
+		handler.setFormatter(new PatternFormatter("%millis %nanos %msg%n"));
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		handler.setOutputStream(out);
+		LowLatencyLogger logger = new LowLatencyLogger("com.oaktree.core.logging.clocktest", handler);
+		logger.setLevel(Level.INFO);
+		IClock old = LowLatencyLogManager.getClock();
+		ManualClock clock = new ManualClock(1000);
+		try {
+			LowLatencyLogManager.setClock(clock);
+			logger.info("first");
+			clock.advance(1234567);
+			logger.info("second");
+		} finally {
+			LowLatencyLogManager.setClock(old);
+		}
+		Assert.assertEquals("1000 000000 first\n1001 234567 second\n", out.toString());
+
+		NanoClock nano = new NanoClock();
+		long last = nano.getNanos();
+		Assert.assertTrue(Math.abs(nano.getMillis() - System.currentTimeMillis()) < 50);
+		for (int i = 0; i < 10000; i++) {
+			long n = nano.getNanos();
+			Assert.assertTrue(n >= last);
+			last = n;
+		}
+		CoarseClock coarse = new CoarseClock();
+		coarse.start();
+		try {
+			Assert.assertTrue(Math.abs(coarse.getMillis() - System.currentTimeMillis()) < 50);
+		} finally {
+			coarse.stop();
+		}
+	}
+
+	@Test
+	public void testThreadIdentity() throws Exception {
+		final List<Object> seen = new ArrayList<Object>();
+		Thread t = new Thread("identity-1") {
+			public void run() {
+				ThreadIdentity first = ThreadIdentity.current();
+				seen.add(first);
+				seen.add(ThreadIdentity.current());
+				setName("identity-2");
+				seen.add(ThreadIdentity.current());
+			}
+		};
+		t.start();
+		t.join();
+		ThreadIdentity first = (ThreadIdentity)seen.get(0);
+		ThreadIdentity renamed = (ThreadIdentity)seen.get(2);
+		//made once per thread; remade only on a rename, leaving the old one as it was.
+		Assert.assertSame(first, seen.get(1));
+		Assert.assertEquals("identity-1", first.getName());
+		Assert.assertEquals("identity-2", renamed.getName());
+		Assert.assertEquals("identity-2", new String(renamed.getNameBytes()));
+		Assert.assertEquals(first.getId(), renamed.getId());
+		Assert.assertEquals((int)t.getId(), first.getId());
+
+		LogRecord record = new LogRecord();
+		record.setThreadIdentity(renamed);
+		Assert.assertEquals("identity-2", record.getThreadName());
+		Assert.assertEquals(first.getId(), record.getThreadId());
+		StringBuilder buffer = new StringBuilder();
+		ThreadIdentity.appendId(record, buffer);
+		ThreadIdentity.appendName(record, buffer);
+		Assert.assertEquals(first.getIdString() + "identity-2", buffer.toString());
+	}
+
+	@Test
+	public void testMDC() throws Exception {
+		MDCMap map = new MDCMap(4);
+		for (int i = 0; i < 100; i++) {
+			map.put("k" + i, "v" + i);
+		}
+		for (int i = 0; i < 100; i += 2) {
+			map.remove("k" + i);
+		}
+		Assert.assertEquals(50, map.size());
+		for (int i = 0; i < 100; i++) {
+			Assert.assertEquals(i % 2 == 0 ? null : "v" + i, map.get("k" + i));
+		}
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ConsoleHandler delegate = new ConsoleHandler();
+		delegate.setFormatter(new PatternFormatter("%mdc{order}|%mdc|%msg%n"));
+		delegate.setOutputStream(out);
+		BackgroundConsoleHandler handler = new BackgroundConsoleHandler();
+		handler.setHandler(delegate);
+		handler.start();
+		LowLatencyLogger logger = new LowLatencyLogger("com.oaktree.core.logging.mdctest", handler);
+		logger.setLevel(Level.INFO);
+		try {
+			MDC.put("order", "42");
+			logger.info("with");
+			//the record keeps what the MDC held when logged, even though the handler runs later.
+			MDC.clear();
+			logger.info("without");
+			for (int i = 0; i < 200 && !out.toString().contains("without"); i++) {
+				Thread.sleep(10);
+			}
+		} finally {
+			MDC.clear();
+			handler.stop();
+		}
+		Assert.assertEquals("42|order=42|with\n||without\n", out.toString());
+	}
+
+	@Test
+	public void testThrottle() {
+		Throttle limit = Throttle.parse("10/s", null);
+		int allowed = 0;
+		for (int i = 0; i < 1000; i++) {
+			if (limit.allow()) {
+				allowed++;
+			}
+		}
+		//a second's burst, plus any refill while we ran.
+		Assert.assertTrue("allowed " + allowed, allowed >= 10 && allowed < 20);
+		Assert.assertEquals(1000 - allowed, limit.getSuppressed());
+		try {
+			Throttle.parse("10/fortnight", null);
+			Assert.fail("Unknown units should be rejected");
+		} catch (IllegalArgumentException e) {
+		}
+
+		ConsoleHandler handler = new ConsoleHandler();
+		handler.setFormatter(new PatternFormatter("%msg%n"));
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		handler.setOutputStream(out);
+		LowLatencyLogger logger = new LowLatencyLogger("com.oaktree.core.logging.throttletest", handler);
+		logger.setLevel(Level.INFO);
+		//1 in 10, summarising at once.
+		logger.setThrottle(new Throttle(0, 0.1, 0));
+		for (int i = 0; i < 20; i++) {
+			logger.info("record {}", i);
+		}
+		Assert.assertTrue(out.toString(), out.toString().matches("record 0\nLogger com.oaktree.core.logging.throttletest suppressed 9 records in the last \\d+ms\nrecord 10\n"));
+
+		//the summary gives the time since the last one, not the configured period.
+		Throttle sampled = new Throttle(0, 0.5, 60000);
+		sampled.allow();
+		sampled.allow();
+		Assert.assertNull(sampled.takeSummary());
+		Throttle.Summary summary = sampled.takeUnreported();
+		Assert.assertEquals(1, summary.getSuppressed());
+		Assert.assertTrue(summary.getMillis() < 60000);
+		Assert.assertNull(sampled.takeUnreported());
+
+		//asking whether to log takes nothing from the throttle; only logging does.
+		out.reset();
+		logger.setThrottle(new Throttle(0, 0.1, 0));
+		for (int i = 0; i < 20; i++) {
+			final int n = i;
+			if (logger.isLoggable(Level.INFO)) {
+				logger.info(new IMessageSupplier() {
+					@Override
+					public String get() {
+						return "guarded " + n;
+					}
+				});
+			}
+		}
+		Assert.assertTrue(out.toString(), out.toString().startsWith("guarded 0\n"));
+		Assert.assertTrue(out.toString(), out.toString().endsWith("guarded 10\n"));
+	}
+
+	@Test
+	public void testRepeatSuppressingHandler() {
+		ConsoleHandler delegate = new ConsoleHandler();
+		delegate.setFormatter(new PatternFormatter("%msg%n"));
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		delegate.setOutputStream(out);
+		RepeatSuppressingHandler handler = new RepeatSuppressingHandler(delegate, 60000);
+		for (int i = 0; i < 5; i++) {
+			ILogRecord record = createTestRecord("venue {} rejected");
+			record.addArgument(7L);
+			handler.publish(record);
+		}
+		List<ILogRecord> batch = new ArrayList<ILogRecord>();
+		for (int i = 0; i < 3; i++) {
+			ILogRecord record = createTestRecord("venue {} rejected");
+			record.addArgument(8L);
+			batch.add(record);
+		}
+		handler.publish(batch);
+		handler.stop();
+		Assert.assertEquals("venue 7 rejected\nPrevious message repeated 4 times\nvenue 8 rejected\nPrevious message repeated 2 times\n", out.toString());
+		Assert.assertEquals(6, handler.getSuppressed());
+
+		//the same message with a different exception is not a repeat; with the same one it is.
+		handler = new RepeatSuppressingHandler(new ConsoleHandler(), 60000);
+		Exception state = new IllegalStateException("x");
+		for (Exception error:new Exception[]{state, new IllegalArgumentException("x"), state, state}) {
+			ILogRecord record = createTestRecord("send failed");
+			record.setThrowable(error);
+			handler.publish(record);
+		}
+		Assert.assertEquals(1, handler.getSuppressed());
+	}
+
+	@Test
+	public void testBackgroundHandlerSuppressesRepeats() {
+		ConsoleHandler delegate = new ConsoleHandler();
+		delegate.setFormatter(new PatternFormatter("%msg%n"));
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		delegate.setOutputStream(out);
+		BackgroundConsoleHandler handler = new BackgroundConsoleHandler();
+		handler.setHandler(delegate);
+		handler.setRepeatWindow("60000");
+		handler.start();
+		for (int i = 0; i < 3; i++) {
+			handler.publish(createTestRecord("venue rejected"));
+		}
+		handler.stop();
+		Assert.assertEquals("venue rejected\nPrevious message repeated 2 times\n", out.toString());
+	}
+
+	@Test
+	public void testLazyMessages() {
+		ConsoleHandler handler = new ConsoleHandler();
+		handler.setFormatter(new PatternFormatter("%msg%n"));
+		handler.setLevel(Level.WARN);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		handler.setOutputStream(out);
+		LowLatencyLogger logger = new LowLatencyLogger("com.oaktree.core.logging.lazytest", handler);
+		logger.setLevel(Level.INFO);
+		final int[] calls = new int[1];
+		IMessageSupplier supplier = new IMessageSupplier() {
+			@Override
+			public String get() {
+				calls[0]++;
+				return "supplied " + calls[0];
+			}
+		};
+		IMessageRenderer<int[]> renderer = new IMessageRenderer<int[]>() {
+			@Override
+			public void render(int[] arg, StringBuilder buffer) {
+				calls[0]++;
+				for (int i = 0; i < arg.length; i++) {
+					buffer.append(i == 0 ? "" : ",").append(arg[i]);
+				}
+			}
+		};
+		int[] book = new int[] {100, 101, 102};
+		//logger level off.
+		logger.debug(supplier);
+		logger.log(Level.DEBUG, "book {}", book, renderer);
+		//logger takes it but the only handler would not.
+		logger.info(supplier);
+		logger.log(Level.INFO, "book {}", book, renderer);
+		Assert.assertEquals(0, calls[0]);
+		logger.warn(supplier);
+		logger.log(Level.ERROR, "book {}", book, renderer);
+		Assert.assertEquals(2, calls[0]);
+		Assert.assertEquals("supplied 1\nbook 100,101,102\n", out.toString());
+	}
+
+	@Test
+	public void testLogBuilder() {
+		ConsoleHandler handler = new ConsoleHandler();
+		handler.setFormatter(new PatternFormatter("%level %msg%n"));
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		handler.setOutputStream(out);
+		LowLatencyLogger logger = new LowLatencyLogger("com.oaktree.core.logging.buildertest", handler);
+		logger.setLevel(Level.INFO);
+		char[] symbol = "VOD.L".toCharArray();
+		logger.atInfo().add("px", 101.25).add("qty", 500L).add(symbol).log();
+		Assert.assertSame(LogBuilder.NOOP, logger.atDebug());
+		logger.atDebug().add("px", 99.5).log();
+		logger.atWarn().add("side", "BUY").add("filled", true).log();
+		Assert.assertEquals("INFO px=101.25 qty=500 VOD.L\nWARN side=BUY filled=true\n", out.toString());
+
+		//a build abandoned part way gives its record back when the thread next builds.
+		PoolStatistics stats = LowLatencyLogManager.getRecordPoolStatistics();
+		long inUse = stats.getInUse();
+		for (int i = 0; i < 3; i++) {
+			try {
+				logger.atInfo().add("px", 101.25).add("qty", Long.parseLong("n/a")).log();
+				Assert.fail("qty should not parse");
+			} catch (NumberFormatException e) {
+			}
+		}
+		out.reset();
+		logger.atInfo().add("after", true).log();
+		Assert.assertEquals("INFO after=true\n", out.toString());
+		Assert.assertEquals(inUse, stats.getInUse());
+
+		//built messages survive a copy, e.g. onto a background queue.
+		LogRecord record = new LogRecord();
+		record.claimMessageBuffer().append("built");
+		LogRecord copy = new LogRecord();
+		copy.copyFrom(record);
+		Assert.assertEquals("built", copy.getMessage());
+		Assert.assertEquals(record.getMessageHash(), copy.getMessageHash());
+		copy.setMessage("plain");
+		Assert.assertEquals("plain", copy.getMessage());
+	}
+
+	@Test
+	public void testCharSequenceMessages() throws Exception {
+		BackgroundConsoleHandler handler = new BackgroundConsoleHandler();
+		ConsoleHandler delegate = new ConsoleHandler();
+		delegate.setFormatter(new PatternFormatter("%msg%n"));
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		delegate.setOutputStream(out);
+		handler.setHandler(delegate);
+		handler.start();
+		LowLatencyLogger logger = new LowLatencyLogger("com.oaktree.core.logging.charstest", handler);
+		logger.setLevel(Level.INFO);
+		StringBuilder message = new StringBuilder();
+		message.append("fill {} ").append(42);
+		logger.info(message);
+		//reused before the background thread gets to the record.
+		message.setLength(0);
+		message.append("spoilt");
+		logger.debug(message);
+		char[] chars = "xxcancelledxx".toCharArray();
+		logger.warn(chars, 2, 9);
+		for (int i = 0; i < 200 && !out.toString().contains("cancelled"); i++) {
+			Thread.sleep(10);
+		}
+		handler.stop();
+		Assert.assertEquals("fill {} 42\ncancelled\n", out.toString());
+	}
+
+	@Test
+	public void testMarkers() {
+		Marker audit = MarkerFactory.getMarker("TEST_AUDIT");
+		Marker trade = MarkerFactory.getMarker("TEST_TRADE");
+		Marker fill = MarkerFactory.getDetachedMarker("TEST_FILL");
+		fill.add(trade);
+		long auditBit = Markers.bitOf("TEST_AUDIT");
+		Assert.assertEquals(auditBit, Markers.maskOf(audit));
+		Assert.assertEquals(Markers.bitOf("TEST_FILL") | Markers.bitOf("TEST_TRADE"), Markers.maskOf(fill));
+		//kept masks follow changes to references, including those of referenced markers.
+		Assert.assertTrue(trade instanceof OaktreeMarker);
+		Marker venue = MarkerFactory.getDetachedMarker("TEST_VENUE");
+		trade.add(venue);
+		Assert.assertEquals(Markers.bitOf("TEST_FILL") | Markers.bitOf("TEST_TRADE") | Markers.bitOf("TEST_VENUE"), Markers.maskOf(fill));
+		trade.remove(venue);
+		Assert.assertEquals(Markers.bitOf("TEST_FILL") | Markers.bitOf("TEST_TRADE"), Markers.maskOf(fill));
+
+		ConsoleHandler main = new ConsoleHandler();
+		main.setFormatter(new PatternFormatter("%marker|%msg%n"));
+		ByteArrayOutputStream mainOut = new ByteArrayOutputStream();
+		main.setOutputStream(mainOut);
+		ConsoleHandler audits = new ConsoleHandler();
+		audits.setFormatter(new PatternFormatter("%msg%n"));
+		ByteArrayOutputStream auditOut = new ByteArrayOutputStream();
+		audits.setOutputStream(auditOut);
+		LowLatencyLogger logger = new LowLatencyLogger("com.oaktree.core.logging.markertest", null);
+		logger.addHandler(new MarkerFilterHandler(main, 0L, auditBit));
+		logger.addHandler(new MarkerFilterHandler(audits, auditBit, 0L));
+		logger.setLevel(Level.WARN);
+		logger.setMarkers(auditBit);
+
+		Assert.assertTrue(logger.isInfoEnabled(audit));
+		Assert.assertFalse(logger.isInfoEnabled(trade));
+		logger.info(audit, "login {}", "ij");
+		logger.info(trade, "dropped");
+		logger.warn(fill, "filled {} at {}", 100, 1.5d);
+		Assert.assertEquals("login ij\n", auditOut.toString());
+		Assert.assertEquals("TEST_TRADE,TEST_FILL|filled 100 at 1.5\n".length(), mainOut.toString().length());
+		Assert.assertTrue(mainOut.toString().contains("TEST_FILL"));
+		Assert.assertTrue(mainOut.toString().endsWith("|filled 100 at 1.5\n"));
+	}
+
+	@Test
+	public void testThrowables() {
+		ConsoleHandler handler = new ConsoleHandler();
+		handler.setFormatter(new PatternFormatter("%level %msg%n"));
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		handler.setOutputStream(out);
+		LowLatencyLogger logger = new LowLatencyLogger("com.oaktree.core.logging.throwabletest", handler);
+		logger.setLevel(Level.INFO);
+		IllegalArgumentException inner = new IllegalArgumentException("inner");
+		IllegalStateException outer = new IllegalStateException("outer", inner);
+		logger.debug("filtered", outer);
+		logger.error("boom", outer);
+		String text = out.toString();
+		Assert.assertTrue(text, text.startsWith("ERROR boom\njava.lang.IllegalStateException: outer\n\tat com.oaktree.core.logging.TestLogging.testThrowables(TestLogging.java:"));
+		Assert.assertTrue(text, text.contains("\nCaused by: java.lang.IllegalArgumentException: inner\n\tat com.oaktree.core.logging.TestLogging.testThrowables(TestLogging.java:"));
+		Assert.assertTrue(text, text.endsWith(" more\n"));
+
+		//a last argument not used by a placeholder is the throwable, as in slf4j.
+		out.reset();
+		logger.error("order {} failed", 42, inner);
+		Assert.assertTrue(out.toString(), out.toString().startsWith("ERROR order 42 failed\njava.lang.IllegalArgumentException: inner\n\tat "));
+		out.reset();
+		logger.warn("{} {}", new Object[]{"a", "b", inner});
+		Assert.assertTrue(out.toString(), out.toString().startsWith("WARN a b\njava.lang.IllegalArgumentException: inner\n\tat "));
+		out.reset();
+		logger.info("cause {}", (Object)inner);
+		Assert.assertEquals("INFO cause java.lang.IllegalArgumentException: inner\n", out.toString());
+
+		//one record for the lot, not one per frame.
+		out.reset();
+		final AtomicLong records = new AtomicLong();
+		LowLatencyLogger counted = new LowLatencyLogger("com.oaktree.core.logging.throwabletest.counted", new ConsoleHandler() {
+			@Override
+			public void publish(ILogRecord record) {
+				records.incrementAndGet();
+				super.publish(record);
+			}
+		});
+		((ConsoleHandler)counted.getHandlers()[0]).setOutputStream(out);
+		counted.setLevel(Level.INFO);
+		Log.exception(counted, outer);
+		Assert.assertEquals(1, records.get());
+		Assert.assertTrue(out.toString(), out.toString().contains("Caught exception\n" + outer.getClass().getName()));
+		Assert.assertTrue(out.toString().contains("Caused by: java.lang.IllegalArgumentException: inner"));
+	}
+
+	@Test
+	public void testUnsafeMemoryPadsShortNames() {
+		UnsafeMemory um = new UnsafeMemory(new byte[64]);
+		um.putChars("main", 20);
+		Assert.assertEquals(4 + 40, um.getPos());
+		um.reset();
+		char[] name = um.getCharArray();
+		Assert.assertEquals(20, name.length);
+		Assert.assertEquals("main", new String(name, 0, 4));
+		for (int i = 4; i < name.length; i++) {
+			Assert.assertEquals(0, name[i]);
+		}
+	}
+
+	@Test
+	public void testDirectFileHandlerTruncatesDeepTraces() throws Exception {
+		File file = File.createTempFile("direct", ".log");
+		file.deleteOnExit();
+		DirectFileHandler handler = new DirectFileHandler();
+		handler.setFilename(file.getPath());
+		handler.setBufferCapacity("2000");
+		handler.setDirect("false");
+		handler.setLevel(Level.ALL);
+		handler.start();
+		ILogRecord record = createTestRecord("deep");
+		record.setThrowable(makeDeepException(200));
+		handler.publish(record);
+		handler.publish(createTestRecord("after"));
+		handler.stop();
+		String written = readFile(file);
+		Assert.assertTrue(written.contains("makeDeepException"));
+		Assert.assertTrue(written.contains("...[truncated]"));
+		Assert.assertTrue(written.contains("after"));
+	}
+
+	private static Exception makeException(String message) {
+		return new IllegalStateException(message);
+	}
+
+	@Test
+	public void testStackTraceCache() {
+		ConsoleHandler handler = new ConsoleHandler();
+		handler.setFormatter(new PatternFormatter("%msg%n"));
+		handler.setStackTraceCache("16");
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		handler.setOutputStream(out);
+		LowLatencyLogger logger = new LowLatencyLogger("com.oaktree.core.logging.stacktest", handler);
+		logger.setLevel(Level.INFO);
+		for (int i = 0; i < 3; i++) {
+			logger.error("failed", makeException("attempt " + i));
+		}
+		logger.error("other", new IllegalStateException("attempt 3"));
+		String[] lines = out.toString().split("\n");
+		Matcher first = Pattern.compile("java.lang.IllegalStateException: attempt 0 \\[stack ([0-9a-f]{16})\\]").matcher(lines[1]);
+		Assert.assertTrue(lines[1], first.matches());
+		String id = first.group(1);
+		Assert.assertTrue(lines[2], lines[2].startsWith("\tat com.oaktree.core.logging.TestLogging.makeException("));
+		int i = 2;
+		while (lines[i].startsWith("\tat ")) {
+			i++;
+		}
+		Assert.assertEquals("failed", lines[i]);
+		Assert.assertEquals("java.lang.IllegalStateException: attempt 1 [stack " + id + " repeated]", lines[i + 1]);
+		Assert.assertEquals("failed", lines[i + 2]);
+		Assert.assertEquals("java.lang.IllegalStateException: attempt 2 [stack " + id + " repeated]", lines[i + 3]);
+		Assert.assertEquals("other", lines[i + 4]);
+		//thrown elsewhere, so written in full.
+		Assert.assertFalse(lines[i + 5], lines[i + 5].contains(id));
+		Assert.assertTrue(lines[i + 6], lines[i + 6].startsWith("\tat com.oaktree.core.logging.TestLogging.testStackTraceCache("));
+		Assert.assertEquals(2, handler.getStackTraceCache().size());
+
+		//handlers sharing a formatter each keep their own record of what they have written.
+		PatternFormatter shared = new PatternFormatter("%msg%n");
+		ConsoleHandler cached = new ConsoleHandler();
+		cached.setFormatter(shared);
+		cached.setStackTraceCache("16");
+		ByteArrayOutputStream cachedOut = new ByteArrayOutputStream();
+		cached.setOutputStream(cachedOut);
+		ConsoleHandler full = new ConsoleHandler();
+		full.setFormatter(shared);
+		ByteArrayOutputStream fullOut = new ByteArrayOutputStream();
+		full.setOutputStream(fullOut);
+		LowLatencyLogger both = new LowLatencyLogger("com.oaktree.core.logging.stacktest.shared", null);
+		both.addHandler(cached);
+		both.addHandler(full);
+		both.setLevel(Level.INFO);
+		for (int n = 0; n < 2; n++) {
+			both.error("failed", makeException("shared " + n));
+		}
+		Assert.assertTrue(cachedOut.toString(), cachedOut.toString().contains(" repeated]"));
+		Assert.assertFalse(fullOut.toString(), fullOut.toString().contains("[stack "));
+		Assert.assertTrue(fullOut.toString().lastIndexOf("failed\njava.lang.IllegalStateException: shared 1\n\tat ") >= 0);
+	}
+
+	@Test
+	public void testBatchSurvivesFormatterFailure() {
+		final AtomicLong processed = new AtomicLong();
+		PatternFormatter failing = new PatternFormatter("%msg%n") {
+			@Override
+			public void format(ILogRecord record, StringBuilder buffer) {
+				if ("bad".equals(record.getMessage())) {
+					throw new IllegalStateException("cannot format");
+				}
+				super.format(record, buffer);
+			}
+		};
+		for (String encoding:new String[]{"UTF-8", "ISO-8859-1"}) {
+			ConsoleHandler handler = new ConsoleHandler();
+			handler.setFormatter(failing);
+			handler.setEncoding(encoding);
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			handler.setOutputStream(out);
+			List<ILogRecord> batch = new ArrayList<ILogRecord>();
+			for (String message:new String[]{"one", "bad", "two"}) {
+				batch.add(new LogRecord(message, Level.INFO, 0, 0, "t", null) {
+					@Override
+					public void onProcessed(ILoggingHandler handler) {
+						processed.incrementAndGet();
+					}
+				});
+			}
+			processed.set(0);
+			handler.publish(batch);
+			Assert.assertEquals(encoding, 3, processed.get());
+			Assert.assertEquals(encoding, "one\ntwo\n", out.toString());
+		}
+	}
+
+	private static Exception makeDeepException(int depth) {
+		return depth == 0 ? new IllegalStateException("deep") : makeDeepException(depth - 1);
+	}
+
+	@Test
+	public void testStackTraceCacheBytePath() {
+		ConsoleHandler handler = new ConsoleHandler();
+		handler.setFormatter(new PatternFormatter("%msg%n"));
+		handler.setEncoding("UTF-8");
+		handler.setStackTraceCache("16");
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		handler.setOutputStream(out);
+		LowLatencyLogger logger = new LowLatencyLogger("com.oaktree.core.logging.stackbytetest", handler);
+		logger.setLevel(Level.INFO);
+		//far more than the 1K byte buffer, so it must be flushed or grown part way.
+		Exception deep = makeDeepException(60);
+		logger.error("first", deep);
+		logger.error("second", deep);
+		String text = out.toString();
+		Assert.assertFalse(text, text.substring(0, text.indexOf("second")).contains("repeated"));
+		int frames = 0;
+		for (String line:text.split("\n")) {
+			if (line.contains("makeDeepException")) {
+				frames++;
+			}
+		}
+		Assert.assertEquals(61, frames);
+		Assert.assertTrue(text, text.endsWith(" repeated]\n"));
+	}
+
 	@Test
 	public void testConsoleFormatterSpeed() {
 		ConsoleFormatter formatter = new ConsoleFormatter();